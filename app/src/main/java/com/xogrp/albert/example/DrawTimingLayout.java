@@ -0,0 +1,42 @@
+package com.xogrp.albert.example;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.widget.FrameLayout;
+
+/**
+ * FrameLayout that measures how long drawing its children takes on the main thread, which with
+ * hardware acceleration is the time spent recording their display lists.
+ */
+public class DrawTimingLayout extends FrameLayout {
+
+    private long mDrawNanos;
+    private int mDrawCount;
+
+    public DrawTimingLayout(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        final long start = System.nanoTime();
+        super.dispatchDraw(canvas);
+        mDrawNanos += System.nanoTime() - start;
+        mDrawCount++;
+    }
+
+    /**
+     * Forgets the draws timed so far.
+     */
+    public void resetDrawTime() {
+        mDrawNanos = 0;
+        mDrawCount = 0;
+    }
+
+    /**
+     * Returns the average time to draw the children since the last reset, in microseconds.
+     */
+    public double getAverageDrawMicros() {
+        return mDrawCount > 0 ? mDrawNanos / 1000.0 / mDrawCount : 0;
+    }
+}
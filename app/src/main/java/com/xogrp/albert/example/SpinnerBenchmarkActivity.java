@@ -0,0 +1,220 @@
+package com.xogrp.albert.example;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import androidx.annotation.LayoutRes;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+
+import com.xogrp.albert.CircleLoadingView;
+import com.xogrp.albert.SpinnerGroupDrawable;
+import com.xogrp.albert.SpinnerViewPool;
+
+import java.util.Locale;
+
+/**
+ * Compares the inflate, measure and draw cost of {@code CircleLoadingView} and
+ * {@code LiteCircleLoadingView} inflated from the same attributes, with the attributes resolved
+ * on every inflation and taken from the attribute cache, and the cost of binding a
+ * spinner to a row with and without a {@link SpinnerViewPool}. Then compares the time to draw a
+ * grid of N running spinners as N views and as one {@link SpinnerGroupDrawable}, sampled over live
+ * frames. Results are shown on screen and logged under {@value #TAG}.
+ */
+public class SpinnerBenchmarkActivity extends AppCompatActivity {
+
+    private static final String TAG = "SpinnerBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 500;
+
+    /** Spinner counts of the grid benchmark. */
+    private static final int[] GRID_SIZES = {1, 10, 50, 100, 200};
+    private static final int GRID_COLUMNS = 10;
+    private static final int GRID_ROWS = 20;
+    /** Time each grid is left running before its draw time is read. */
+    private static final long GRID_SAMPLE_MILLIS = 2000;
+
+    private TextView mResults;
+    private final StringBuilder mResultText = new StringBuilder();
+    /** Attached container the bind and grid benchmarks add spinners to. */
+    private DrawTimingLayout mRow;
+    private SpinnerGroupDrawable mGroupDrawable;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        final LinearLayout content = new LinearLayout(this);
+        content.setOrientation(LinearLayout.VERTICAL);
+        mResults = new TextView(this);
+        mResults.setText(R.string.benchmark_name);
+        content.addView(mResults);
+        mRow = new DrawTimingLayout(this);
+        content.addView(mRow, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setContentView(content);
+        // Run once the window is up, so the first frame isn't held back.
+        mResults.post(new Runnable() {
+            @Override
+            public void run() {
+                for (boolean cached : new boolean[] {false, true}) {
+                    appendResult(measure("CircleLoadingView", R.layout.item_benchmark_spinner,
+                            cached));
+                    appendResult(measure("LiteCircleLoadingView",
+                            R.layout.item_benchmark_lite_spinner, cached));
+                }
+                appendResult(measureBind(false));
+                appendResult(measureBind(true));
+                measureGrid(0, false);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mGroupDrawable != null) {
+            mGroupDrawable.stop();
+        }
+    }
+
+    private void appendResult(String result) {
+        Log.i(TAG, result);
+        if (mResultText.length() > 0) {
+            mResultText.append('\n');
+        }
+        mResultText.append(result);
+        mResults.setText(mResultText);
+    }
+
+    /**
+     * @param cached {@code false} to clear the attribute cache before every inflation, as if
+     *               each spinner was the first one inflated
+     */
+    private String measure(String name, @LayoutRes int layout, boolean cached) {
+        final LayoutInflater inflater = getLayoutInflater();
+        final FrameLayout parent = new FrameLayout(this);
+        final int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        Bitmap bitmap = null;
+        Canvas canvas = null;
+        long inflateNanos = 0;
+        long measureNanos = 0;
+        long drawNanos = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            if (!cached) {
+                CircleLoadingView.clearAttributeCache();
+            }
+            final long start = System.nanoTime();
+            final View view = inflater.inflate(layout, parent, false);
+            final long inflated = System.nanoTime();
+            view.measure(unspecified, unspecified);
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+            final long measured = System.nanoTime();
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(view.getMeasuredWidth(), view.getMeasuredHeight(),
+                        Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(bitmap);
+            }
+            view.draw(canvas);
+            final long drawn = System.nanoTime();
+            if (i >= WARMUP_ITERATIONS) {
+                inflateNanos += inflated - start;
+                measureNanos += measured - inflated;
+                drawNanos += drawn - measured;
+            }
+        }
+        return String.format(Locale.US,
+                "%s, attributes %s: inflate %.1f us, measure and layout %.1f us, draw %.1f us",
+                name, cached ? "cached" : "resolved", inflateNanos / 1000.0 / ITERATIONS, measureNanos / 1000.0 / ITERATIONS,
+                drawNanos / 1000.0 / ITERATIONS);
+    }
+
+    /**
+     * Times binding a spinner to an attached row and unbinding it again, which attaches and
+     * detaches it, either inflating a new spinner for every bind or taking one from a pool.
+     */
+    private String measureBind(boolean pooled) {
+        final LayoutInflater inflater = getLayoutInflater();
+        final SpinnerViewPool pool = new SpinnerViewPool(R.layout.item_benchmark_spinner, 1);
+        long bindNanos = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            final View view = pooled ? pool.acquire(mRow)
+                    : inflater.inflate(R.layout.item_benchmark_spinner, mRow, false);
+            mRow.addView(view);
+            if (pooled) {
+                pool.release(view);
+            } else {
+                mRow.removeView(view);
+            }
+            if (i >= WARMUP_ITERATIONS) {
+                bindNanos += System.nanoTime() - start;
+            }
+        }
+        return String.format(Locale.US, "Bind %s: %.1f us",
+                pooled ? "from a pool" : "with inflation", bindNanos / 1000.0 / ITERATIONS);
+    }
+
+    /**
+     * Fills the container with a grid of running spinners, either as separate views or as the
+     * rings of one group drawable, and reports the average time to draw the container once the
+     * grid has run for a while. Continues with the next configuration until all are measured.
+     */
+    private void measureGrid(final int step, final boolean group) {
+        if (mGroupDrawable != null) {
+            mGroupDrawable.stop();
+            mGroupDrawable = null;
+        }
+        mRow.removeAllViews();
+        if (step == GRID_SIZES.length || isFinishing()) {
+            return;
+        }
+        final int count = GRID_SIZES[step];
+        final int cell = Math.min(mRow.getWidth() / GRID_COLUMNS, mRow.getHeight() / GRID_ROWS);
+        if (group) {
+            final int[] colors = {
+                    ContextCompat.getColor(this, R.color.colorAccent),
+                    ContextCompat.getColor(this, R.color.colorPrimary),
+                    ContextCompat.getColor(this, R.color.black)
+            };
+            final SpinnerGroupDrawable drawable = new SpinnerGroupDrawable(this);
+            for (int i = 0; i < count; i++) {
+                drawable.addSpinner(cell * (i % GRID_COLUMNS + 0.5f),
+                        cell * (i / GRID_COLUMNS + 0.5f), CircleLoadingView.NORMAL, colors);
+            }
+            final View view = new View(this);
+            view.setBackground(drawable);
+            mRow.addView(view);
+            drawable.start();
+            mGroupDrawable = drawable;
+        } else {
+            final LayoutInflater inflater = getLayoutInflater();
+            for (int i = 0; i < count; i++) {
+                final View view = inflater.inflate(R.layout.item_benchmark_spinner, mRow, false);
+                view.setTranslationX(cell * (i % GRID_COLUMNS));
+                view.setTranslationY(cell * (i / GRID_COLUMNS));
+                mRow.addView(view);
+            }
+        }
+        mRow.resetDrawTime();
+        mRow.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                appendResult(String.format(Locale.US, "Draw %d spinners as %s: %.1f us", count,
+                        group ? "one group" : "views", mRow.getAverageDrawMicros()));
+                if (group) {
+                    measureGrid(step + 1, false);
+                } else {
+                    measureGrid(step, true);
+                }
+            }
+        }, GRID_SAMPLE_MILLIS);
+    }
+}
@@ -0,0 +1,110 @@
+package com.xogrp.albert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing a single frame of each engine, and of the color and arrow helpers used on
+ * every frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SpinnerFrameBenchmark {
+
+    /** Steps through a cycle in frame sized increments so every branch is exercised. */
+    private static final float TIME_STEP = 16f / SpinnerGeometry.ANIMATION_DURATION;
+
+    /** Minimum arc of a default sized material spinner at xxhdpi. */
+    private static final float MATERIAL_MIN_PROGRESS_ARC =
+            SpinnerGeometry.getMaterialMinProgressArc(7.5f, 26.25);
+
+    private static final int[] COLORS = {0xFFFF4081, 0xFF3F51B5, 0xFF4CAF50};
+
+    /** Point of the animation the seek benchmark starts from. */
+    private static final long HOURS_AHEAD_MILLIS = TimeUnit.HOURS.toMillis(10);
+
+    private SpinnerState mState;
+    private SpinnerKeyframes mCircularKeyframes;
+    private SpinnerKeyframes mMaterialKeyframes;
+    private final float[] mArrowPoints = new float[6];
+    private float mInterpolatedTime;
+    private long mElapsedMillis;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mState = new SpinnerState(COLORS);
+        mCircularKeyframes = SpinnerKeyframes.obtain(SpinnerGeometry.STYLE_CIRCULAR,
+                SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, SpinnerKeyframes.DEFAULT_RESOLUTION);
+        mMaterialKeyframes = SpinnerKeyframes.obtain(SpinnerGeometry.STYLE_MATERIAL,
+                MATERIAL_MIN_PROGRESS_ARC, SpinnerKeyframes.DEFAULT_RESOLUTION);
+        mInterpolatedTime = 0f;
+        mElapsedMillis = HOURS_AHEAD_MILLIS;
+    }
+
+    private float nextTime() {
+        float time = mInterpolatedTime + TIME_STEP;
+        if (time >= 1f) {
+            time -= 1f;
+        }
+        mInterpolatedTime = time;
+        return time;
+    }
+
+    @Benchmark
+    public float circularFrame() {
+        SpinnerGeometry.computeFrame(SpinnerGeometry.STYLE_CIRCULAR, nextTime(),
+                SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, mState);
+        return mState.mStartTrim + mState.mEndTrim + mState.mGroupRotation;
+    }
+
+    @Benchmark
+    public float circularKeyframesFrame() {
+        mCircularKeyframes.computeFrame(nextTime(), mState);
+        return mState.mStartTrim + mState.mEndTrim + mState.mGroupRotation;
+    }
+
+    @Benchmark
+    public float materialFrame() {
+        SpinnerGeometry.computeFrame(SpinnerGeometry.STYLE_MATERIAL, nextTime(),
+                MATERIAL_MIN_PROGRESS_ARC, mState);
+        return mState.mStartTrim + mState.mEndTrim + mState.mGroupRotation;
+    }
+
+    @Benchmark
+    public float materialKeyframesFrame() {
+        mMaterialKeyframes.computeFrame(nextTime(), mState);
+        return mState.mStartTrim + mState.mEndTrim + mState.mGroupRotation;
+    }
+
+    /**
+     * A frame hours into the animation, computed from the elapsed time alone as after a seek or
+     * a stall.
+     */
+    @Benchmark
+    public float circularKeyframesFrameHoursAhead() {
+        mElapsedMillis += 16;
+        SpinnerGeometry.computeFrameAt(SpinnerGeometry.STYLE_CIRCULAR, mElapsedMillis,
+                SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, mCircularKeyframes, mState);
+        return mState.mStartTrim + mState.mEndTrim + mState.mGroupRotation;
+    }
+
+    @Benchmark
+    public int evaluateColorChange() {
+        return SpinnerGeometry.evaluateColorChange(nextTime(), COLORS[0], COLORS[1]);
+    }
+
+    @Benchmark
+    public float[] arrowVertices() {
+        SpinnerGeometry.computeArrow(30f, 15f, nextTime(), 60f, 60f, mArrowPoints);
+        return mArrowPoints;
+    }
+}
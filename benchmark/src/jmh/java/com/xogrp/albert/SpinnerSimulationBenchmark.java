@@ -0,0 +1,88 @@
+package com.xogrp.albert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs 50 concurrent spinners through one million 60 fps frames, the way a busy feed screen
+ * would advance them from the shared frame clock. Only the animation math is measured; the
+ * allocation-free frame path of the drawables themselves is checked by
+ * {@code FrameAllocationTest}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class SpinnerSimulationBenchmark {
+
+    private static final int SPINNERS = 50;
+    private static final int FRAMES = 1000000;
+    private static final long FRAME_INTERVAL = 16;
+
+    private static final int[] COLORS = {0xFFFF4081, 0xFF3F51B5, 0xFF4CAF50};
+
+    @Param({"circular", "material"})
+    public String mStyle;
+
+    @Param({"live", "keyframes"})
+    public String mMath;
+
+    private int mStyleId;
+    private float mMinProgressArc;
+    private SpinnerKeyframes mKeyframes;
+    private SpinnerState[] mSpinners;
+    private long[] mStartTimes;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        final int style = "circular".equals(mStyle) ? SpinnerGeometry.STYLE_CIRCULAR
+                : SpinnerGeometry.STYLE_MATERIAL;
+        final float minProgressArc = style == SpinnerGeometry.STYLE_CIRCULAR
+                ? SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC
+                : SpinnerGeometry.getMaterialMinProgressArc(7.5f, 26.25);
+        final SpinnerKeyframes keyframes = "keyframes".equals(mMath)
+                ? SpinnerKeyframes.obtain(style, minProgressArc, SpinnerKeyframes.DEFAULT_RESOLUTION)
+                : null;
+        mStyleId = style;
+        mMinProgressArc = minProgressArc;
+        mKeyframes = keyframes;
+        mSpinners = new SpinnerState[SPINNERS];
+        mStartTimes = new long[SPINNERS];
+        for (int i = 0; i < SPINNERS; i++) {
+            mSpinners[i] = new SpinnerState(COLORS);
+            // Stagger the start times like spinners bound at different moments.
+            mStartTimes[i] = -i * 7;
+        }
+    }
+
+    @Benchmark
+    public float run() {
+        final int style = mStyleId;
+        final float minProgressArc = mMinProgressArc;
+        final SpinnerKeyframes keyframes = mKeyframes;
+        final SpinnerState[] spinners = mSpinners;
+        final long[] startTimes = mStartTimes;
+        float checksum = 0f;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            final long frameTime = frame * FRAME_INTERVAL;
+            for (int i = 0; i < SPINNERS; i++) {
+                SpinnerGeometry.computeFrameAt(style, frameTime - startTimes[i], minProgressArc,
+                        keyframes, spinners[i]);
+            }
+            checksum += spinners[frame % SPINNERS].mStartTrim;
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,82 @@
+package com.xogrp.albert;
+
+import android.graphics.Path;
+
+import java.util.Arrays;
+
+/**
+ * Arrowhead paths of one ring, built once per arrow size instead of on every frame.
+ *
+ * <p>Each path has the left end of the arrow baseline at the origin; the ring places it with a
+ * canvas translation and rotation, so the same path serves every frame and every bounds. The
+ * scale is quantized to {@link #SCALE_STEPS} steps per unit, so a scale animation such as a
+ * pull-to-refresh gesture only ever builds a small set of paths. Main thread only.
+ */
+final class ArrowPathCache {
+
+    /** Number of distinct arrow scales per unit of scale. */
+    static final int SCALE_STEPS = 32;
+
+    /** Largest quantized scale that gets a cached path; larger ones are rebuilt when drawn. */
+    private static final int MAX_CACHED_STEP = 2 * SCALE_STEPS;
+
+    private final Path[] mPaths = new Path[MAX_CACHED_STEP + 1];
+    private final float[] mPoints = new float[6];
+    private Path mUncached;
+    private float mWidth;
+    private float mHeight;
+
+    /**
+     * Sets the unscaled arrow dimensions, dropping the cached paths if they changed.
+     *
+     * @param width width of the baseline of the arrow in pixels
+     * @param height distance from tip of the arrow to its baseline in pixels
+     */
+    void setDimensions(float width, float height) {
+        if (width != mWidth || height != mHeight) {
+            mWidth = width;
+            mHeight = height;
+            Arrays.fill(mPaths, null);
+        }
+    }
+
+    /**
+     * Returns the scale the arrow is drawn at for the requested one. Callers position the arrow
+     * with this scale so that it stays centered on the arc.
+     */
+    static float quantizeScale(float scale) {
+        return Math.round(scale * SCALE_STEPS) / (float) SCALE_STEPS;
+    }
+
+    /**
+     * Returns the arrow path at the given scale, which must already be quantized with
+     * {@link #quantizeScale(float)}.
+     */
+    Path get(float scale) {
+        final int step = Math.round(scale * SCALE_STEPS);
+        if (step >= 0 && step <= MAX_CACHED_STEP) {
+            Path path = mPaths[step];
+            if (path == null) {
+                path = build(new Path(), scale);
+                mPaths[step] = path;
+            }
+            return path;
+        }
+        if (mUncached == null) {
+            mUncached = new Path();
+        }
+        return build(mUncached, scale);
+    }
+
+    private Path build(Path path, float scale) {
+        final float[] points = mPoints;
+        SpinnerGeometry.computeArrow(mWidth, mHeight, scale, 0, 0, points);
+        path.reset();
+        path.setFillType(Path.FillType.EVEN_ODD);
+        path.moveTo(points[0], points[1]);
+        path.lineTo(points[2], points[3]);
+        path.lineTo(points[4], points[5]);
+        path.close();
+        return path;
+    }
+}
@@ -2,19 +2,22 @@ package com.xogrp.albert;
 
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.RadialGradient;
-import android.graphics.Shader;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.ShapeDrawable;
 import android.graphics.drawable.shapes.OvalShape;
 import android.os.Build;
+import android.os.SystemClock;
 import androidx.annotation.ColorInt;
 import androidx.annotation.ColorRes;
 import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.core.view.ViewCompat;
 import androidx.appcompat.widget.AppCompatImageView;
@@ -27,6 +30,8 @@ import android.view.ViewTreeObserver;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * Copyright 2016 Albert Liu
@@ -44,7 +49,7 @@ import java.lang.annotation.RetentionPolicy;
  * limitations under the License.
  */
 public class CircleLoadingView extends AppCompatImageView{
-    private static final int SHADOW_COLOR = 0xFFFAFAFA;
+    private static final int SHADOW_COLOR = SpinnerSpec.DEFAULT_BACKGROUND_COLOR;
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LARGE, NORMAL})
     public @interface Size {}
@@ -52,74 +57,376 @@ public class CircleLoadingView extends AppCompatImageView{
     public static final int LARGE = CircularProgressDrawable.LARGE;
     public static final int NORMAL = CircularProgressDrawable.DEFAULT;
 
+    /** Follow the rate set with {@link #setDefaultFrameRate(int)}. */
+    public static final int FRAME_RATE_DEFAULT = FrameRateLimiter.FRAME_RATE_DEFAULT;
+    /** Redraw on every vsync of the display. */
+    public static final int FRAME_RATE_DISPLAY = FrameRateLimiter.FRAME_RATE_DISPLAY;
+
     private static final boolean UP_LOLLIPOP = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
 
     private static final ShadowHelperCompat IMPL;
+    /** Settings of the spinner, applied to the drawable once it is created. */
+    private SpinnerSpec mSpec;
+    /** Creator of the drawable, {@code null} until the spinner is first shown. */
     private ProgressDrawableCreator mCreator;
 
+    /** Copy of the image matrix, refreshed whenever ImageView reconfigures the drawable. */
+    private final Matrix mDrawMatrix = new Matrix();
+    private final RectF mTempDirty = new RectF();
+    private int mDrawableWidth = -1;
+    private int mDrawableHeight = -1;
+
+    /**
+     * How long a detached spinner keeps the phase of its animation. Reattaching within this
+     * window, as a list rebinding a row does, continues the cycle instead of restarting it.
+     */
+    static final long PHASE_RETENTION_MILLIS = 1000;
+
+    /** Refresh rate assumed when the display doesn't report one. */
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private static long sTotalFramesSaved;
+    private final Rect mVisibleRect = new Rect();
+    private boolean mAttached;
+    /** Whether the animation was started for the current attachment. */
+    private boolean mStarted;
+    private boolean mPaused;
+    /** Uptime at which a detach paused the animation, or -1 if it isn't waiting to resume. */
+    private long mDetachTime = -1;
+    private long mPauseStartTime;
+    private long mFramesSaved;
+    private int mFrameRate = FRAME_RATE_DEFAULT;
+
+    /** Latest progress published by {@link #setProgress(float)}, as float bits. */
+    private final AtomicInteger mPublishedProgress = new AtomicInteger();
+    /** Set while {@link #mApplyProgress} is posted, so updates coalesce into one per frame. */
+    private final AtomicBoolean mProgressPosted = new AtomicBoolean();
+    private final Runnable mApplyProgress = new Runnable() {
+        @Override
+        public void run() {
+            // Cleared before reading, so a value published meanwhile posts again.
+            mProgressPosted.set(false);
+            applyProgress(Float.intBitsToFloat(mPublishedProgress.get()));
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    updateVisibleAnimation();
+                }
+            };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    updateVisibleAnimation();
+                }
+            };
+
     static {
         IMPL = UP_LOLLIPOP ? new LollipopShadowHelper() : new ShadowHelper();
     }
 
+    /*
+     * The constructors only parse the attributes and set up the shadow disc, so they may run on a
+     * background thread, for instance from an AsyncLayoutInflater. The drawable is created on the
+     * main thread the first time the spinner is attached and visible.
+     */
+
     public CircleLoadingView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        init(context, attrs);
+        init(context, attrs, 0);
     }
 
     public CircleLoadingView(Context context) {
         super(context);
-        init(context, null);
+        init(context, null, 0);
     }
 
     public CircleLoadingView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init(context, attrs);
-    }
-
-    private void init(Context context, AttributeSet attrs) {
-        ViewCompat.setBackground(this, IMPL.createShadowShapeDrawable(context, this, SHADOW_COLOR));
-        mCreator = new ProgressDrawableCreator.CircularProgressDrawableCreator();
-        mCreator.createDrawable(context, this);
-        mCreator.getDrawable().setAlpha(255);
-        if(attrs != null){
-            TypedArray a = context.obtainStyledAttributes(attrs,
-                    R.styleable.CircleLoadingView);
-            setBackgroundColor(a.getColor(R.styleable.CircleLoadingView_bg_color, SHADOW_COLOR));
-            int size = a.getInteger(R.styleable.CircleLoadingView_size, NORMAL);
-            if(size == NORMAL) {
-                mCreator.setSize(CircularProgressDrawable.DEFAULT);
-            }else if(size == LARGE){
-                mCreator.setSize(CircularProgressDrawable.LARGE);
-            }
-            int color1 = a.getColor(R.styleable.CircleLoadingView_progress_color, Color.BLACK);
-            int color2 = a.getColor(R.styleable.CircleLoadingView_progress_second_color, Color.BLACK);
-            int color3 = a.getColor(R.styleable.CircleLoadingView_progress_third_color, Color.BLACK);
-            setColorSchemeColors(color1, color2, color3);
-            boolean showArrow = a.getBoolean(R.styleable.CircleLoadingView_show_arrow, false);
-            mCreator.setArrowEnabled(showArrow);
-            a.recycle();
+        init(context, attrs, defStyleAttr);
+    }
+
+    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+        mSpec = SpinnerSpec.parse(context, attrs, defStyleAttr);
+        ViewCompat.setBackground(this, IMPL.createShadowShapeDrawable(context, this,
+                getShadowMetrics(), SHADOW_COLOR));
+        mFrameRate = mSpec.mFrameRate;
+        setBackgroundColor(mSpec.mBackgroundColor);
+    }
+
+    /**
+     * Returns the metrics the shadow disc is sized by, those of the current diameter.
+     */
+    private SpinnerMetrics getShadowMetrics() {
+        return SpinnerMetrics.obtain(SpinnerGeometry.STYLE_CIRCULAR, mSpec.getDiameterDp(),
+                getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * Sizes the pre-Lollipop shadow disc to a new diameter, keeping its color.
+     */
+    private void updateShadow() {
+        if (UP_LOLLIPOP || !(getBackground() instanceof ShapeDrawable)) {
+            return;
         }
-        setImageDrawable(mCreator.getDrawable());
+        final int color = ((ShapeDrawable) getBackground()).getPaint().getColor();
+        ViewCompat.setBackground(this, IMPL.createShadowShapeDrawable(getContext(), this,
+                getShadowMetrics(), color));
+    }
+
+    /**
+     * Returns the creator, creating the drawable from the spec on first use.
+     */
+    private ProgressDrawableCreator getCreator() {
+        if (mCreator == null) {
+            mCreator = mSpec.createCreator(getContext());
+            updateFrameStatsRefreshRate();
+            setImageDrawable(mCreator.getDrawable());
+        }
+        return mCreator;
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        super.setImageDrawable(drawable);
+        updateDrawMatrix();
+    }
+
+    @Override
+    public void setImageMatrix(Matrix matrix) {
+        super.setImageMatrix(matrix);
+        updateDrawMatrix();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        updateDrawMatrix();
+    }
+
+    private void updateDrawMatrix() {
+        // getImageMatrix() allocates when no matrix is applied, so it is only read here and not
+        // on every frame.
+        mDrawMatrix.set(getImageMatrix());
+        final Drawable drawable = getDrawable();
+        mDrawableWidth = drawable != null ? drawable.getIntrinsicWidth() : -1;
+        mDrawableHeight = drawable != null ? drawable.getIntrinsicHeight() : -1;
+    }
+
+    /**
+     * ImageView invalidates the whole view for every frame of its drawable. The spinner
+     * drawables report the area the ring covers as their dirty bounds, so only that area, mapped
+     * to view coordinates, is invalidated.
+     */
+    @Override
+    public void invalidateDrawable(@NonNull Drawable dr) {
+        if (dr != getDrawable() || dr.getIntrinsicWidth() != mDrawableWidth
+                || dr.getIntrinsicHeight() != mDrawableHeight) {
+            // Let ImageView pick up the new size first.
+            super.invalidateDrawable(dr);
+            updateDrawMatrix();
+            return;
+        }
+        final RectF dirty = mTempDirty;
+        dirty.set(dr.getDirtyBounds());
+        mDrawMatrix.mapRect(dirty);
+        final int left = getPaddingLeft() + getScrollX();
+        final int top = getPaddingTop() + getScrollY();
+        invalidate(left + (int) Math.floor(dirty.left), top + (int) Math.floor(dirty.top),
+                left + (int) Math.ceil(dirty.right), top + (int) Math.ceil(dirty.bottom));
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        mCreator.start();
+        mAttached = true;
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mScrollChangedListener);
+        observer.addOnGlobalLayoutListener(mGlobalLayoutListener);
+        if (mProgressPosted.get()) {
+            // Before API 24, a runnable posted from another thread to a detached view is lost.
+            mApplyProgress.run();
+        }
+        updateVisibleAnimation();
     }
 
+    @SuppressWarnings("deprecation")
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        mCreator.stop();
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mScrollChangedListener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(mGlobalLayoutListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(mGlobalLayoutListener);
+        }
+        if (mStarted) {
+            if (mPaused) {
+                countFramesSaved();
+            } else {
+                mCreator.pause();
+            }
+            mDetachTime = SystemClock.uptimeMillis();
+        }
+        mStarted = false;
+        mPaused = false;
+        mAttached = false;
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateVisibleAnimation();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateVisibleAnimation();
+    }
+
+    /**
+     * Pauses the animation while the spinner can't be seen: when it or a parent isn't visible,
+     * its window is hidden, or it has been scrolled or clipped out entirely. The animation
+     * resumes from the same point of its cycle. Siblings drawn on top aren't taken into account.
+     *
+     * <p>The animation only starts once the spinner is visible, which is also when the drawable
+     * is created the first time.
+     */
+    private void updateVisibleAnimation() {
+        if (!mAttached) {
+            // Also covers calls made while the super constructor runs.
+            return;
+        }
+        final boolean visible = getWindowVisibility() == VISIBLE && isShown()
+                && getGlobalVisibleRect(mVisibleRect);
+        if (!mStarted) {
+            if (visible) {
+                mStarted = true;
+                mPaused = false;
+                startAnimation();
+            }
+            return;
+        }
+        if (visible == !mPaused) {
+            return;
+        }
+        if (visible) {
+            countFramesSaved();
+            mPaused = false;
+            mCreator.resume();
+        } else {
+            mPaused = true;
+            mPauseStartTime = SystemClock.uptimeMillis();
+            mCreator.pause();
+        }
+    }
+
+    /**
+     * Continues the animation where a recent detach left it, or starts a new one.
+     */
+    private void startAnimation() {
+        final ProgressDrawableCreator creator = getCreator();
+        final long detachedMillis = SystemClock.uptimeMillis() - mDetachTime;
+        if (mDetachTime >= 0 && detachedMillis <= PHASE_RETENTION_MILLIS) {
+            creator.resume();
+        } else {
+            if (mDetachTime >= 0) {
+                creator.stop();
+            }
+            creator.start();
+        }
+        mDetachTime = -1;
+    }
+
+    private void countFramesSaved() {
+        final long pausedMillis = SystemClock.uptimeMillis() - mPauseStartTime;
+        final long framesSaved = (long) (pausedMillis * getEffectiveFrameRate() / 1000);
+        mFramesSaved += framesSaved;
+        sTotalFramesSaved += framesSaved;
+    }
+
+    private float getEffectiveFrameRate() {
+        final int frameRate = mFrameRate == FRAME_RATE_DEFAULT
+                ? FrameRateLimiter.getDefaultFrameRate() : mFrameRate;
+        if (frameRate != FRAME_RATE_DISPLAY) {
+            return frameRate;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && getDisplay() != null) {
+            return getDisplay().getRefreshRate();
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    /**
+     * Starts or stops recording {@link FrameStats} for this spinner. The expected frame interval
+     * follows the refresh rate of the display the view is on when this is called.
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        mSpec.mFrameStatsEnabled = enabled;
+        if (mCreator != null) {
+            mCreator.setFrameStatsEnabled(enabled);
+            updateFrameStatsRefreshRate();
+        }
+    }
+
+    private void updateFrameStatsRefreshRate() {
+        final FrameStats stats = mCreator.getFrameStats();
+        if (stats != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && getDisplay() != null) {
+            stats.setDisplayRefreshRate(getDisplay().getRefreshRate());
+        }
+    }
+
+    /**
+     * Returns the frame statistics of this spinner, or {@code null} unless enabled with
+     * {@link #setFrameStatsEnabled(boolean)}. The vector engine doesn't record statistics.
+     * Creates the drawable if the spinner hasn't been shown yet.
+     */
+    @Nullable
+    public FrameStats getFrameStats() {
+        return getCreator().getFrameStats();
+    }
+
+    /**
+     * Returns an estimate of the frames this spinner did not draw because it was paused while
+     * not visible, based on the time spent paused and its frame rate. A pause still in progress
+     * is counted once it ends.
+     */
+    public long getFramesSaved() {
+        return mFramesSaved;
+    }
+
+    /**
+     * Returns the sum of {@link #getFramesSaved()} over every spinner of the process.
+     */
+    public static long getTotalFramesSaved() {
+        return sTotalFramesSaved;
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (mCreator != null) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        } else {
+            // Take the size the drawable will have, so creating it doesn't change the layout.
+            final int diameter = mSpec.getDiameter(getResources().getDisplayMetrics().density);
+            setMeasuredDimension(
+                    resolveSizeAndState(diameter + getPaddingLeft() + getPaddingRight(),
+                            widthMeasureSpec, 0),
+                    resolveSizeAndState(diameter + getPaddingTop() + getPaddingBottom(),
+                            heightMeasureSpec, 0));
+        }
         if (!UP_LOLLIPOP) {
-            setMeasuredDimension(getMeasuredWidth() + IMPL.getHorizontalShadowPadding(), getMeasuredHeight()
-                    + IMPL.getVerticalShadowPadding());
+            final SpinnerMetrics metrics = getShadowMetrics();
+            setMeasuredDimension(getMeasuredWidth() + IMPL.getHorizontalShadowPadding(metrics),
+                    getMeasuredHeight() + IMPL.getVerticalShadowPadding(metrics));
         }
     }
 
@@ -138,7 +445,181 @@ public class CircleLoadingView extends AppCompatImageView{
      * @param colors colors
      */
     public void setColorSchemeColors(int... colors) {
-        mCreator.setColorSchemeColors(colors);
+        mSpec.mColors = colors.clone();
+        if (mCreator != null) {
+            // A scheme of several colors moves the vector engine to its fallback drawable.
+            mCreator.setColorSchemeColors(colors);
+            updateDrawable();
+        }
+    }
+
+    /**
+     * Draws the spinner from a shared atlas of pre-rendered frames instead of stroking the arc on
+     * every frame. This is cheaper on low-end devices, at the cost of the memory reported by
+     * {@link #getSpriteAtlasMemoryUsage()}. Only the circular engine supports it.
+     *
+     * @param enabled {@code true} to draw from the atlas
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        mSpec.mUseSpriteAtlas = enabled;
+        if (mCreator != null) {
+            mCreator.setSpriteAtlasEnabled(enabled);
+        }
+    }
+
+    /**
+     * Returns the memory in bytes held by the sprite atlases shared by all spinners of the
+     * process.
+     */
+    public static int getSpriteAtlasMemoryUsage() {
+        return SpinnerAtlas.getMemoryUsage();
+    }
+
+    /**
+     * Drops the attributes cached by spinner inflations, so the next ones resolve their
+     * attributes again. The cache follows configuration changes on its own; this is only needed
+     * after a style was applied to a theme at runtime. Safe to call from any thread.
+     */
+    public static void clearAttributeCache() {
+        SpinnerSpec.clearCache();
+    }
+
+    /**
+     * Caps how often this spinner redraws, for example 30 for a secondary indicator. Skipped
+     * vsyncs don't change the speed of the animation.
+     *
+     * @param frameRate frames per second, {@link #FRAME_RATE_DISPLAY} or
+     *                  {@link #FRAME_RATE_DEFAULT}
+     */
+    public void setFrameRate(int frameRate) {
+        mFrameRate = frameRate;
+        mSpec.mFrameRate = frameRate;
+        if (mCreator != null) {
+            mCreator.setFrameRate(frameRate);
+        }
+    }
+
+    /**
+     * Sets the frame rate of every spinner that doesn't have its own, {@link #FRAME_RATE_DISPLAY}
+     * by default. Must be called on the main thread.
+     *
+     * @param frameRate frames per second, or {@link #FRAME_RATE_DISPLAY}
+     */
+    public static void setDefaultFrameRate(int frameRate) {
+        FrameRateLimiter.setDefaultFrameRate(frameRate);
+    }
+
+    /**
+     * Blends between consecutive progress colors in the perceptual OKLab color space instead of
+     * per channel, which avoids muddy midpoints between saturated colors.
+     *
+     * @param perceptual {@code true} to blend in OKLab
+     */
+    public void setPerceptualColorBlending(boolean perceptual) {
+        mSpec.mPerceptualColorBlending = perceptual;
+        if (mCreator != null) {
+            mCreator.setPerceptualColorBlending(perceptual);
+        }
+    }
+
+    /**
+     * Shows a determinate arc covering the given fraction of the ring instead of spinning. A
+     * spinning arc morphs into it without restarting the animation.
+     *
+     * <p>May be called from any thread, as often as progress is reported: the value is published
+     * atomically and applied at most once per frame on the main thread, where the arc eases
+     * toward the latest value.
+     *
+     * @param progress progress from [0..1]
+     */
+    public void setProgress(float progress) {
+        mPublishedProgress.set(Float.floatToIntBits(progress));
+        if (mProgressPosted.compareAndSet(false, true)) {
+            ViewCompat.postOnAnimation(this, mApplyProgress);
+        }
+    }
+
+    private void applyProgress(float progress) {
+        mSpec.mProgress = progress;
+        mSpec.mIndeterminate = false;
+        if (mCreator != null) {
+            mCreator.setProgress(progress);
+            updateDrawable();
+        }
+    }
+
+    /**
+     * Switches between spinning and the determinate arc of {@link #setProgress(float)}. Leaving
+     * the determinate arc closes it before the spinner starts again. Progress published but not
+     * yet applied is dropped when switching to spinning. Main thread only.
+     *
+     * @param indeterminate {@code true} to spin, the default
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (indeterminate) {
+            removeCallbacks(mApplyProgress);
+            mProgressPosted.set(false);
+        }
+        mSpec.mIndeterminate = indeterminate;
+        if (mCreator != null) {
+            mCreator.setIndeterminate(indeterminate);
+            updateDrawable();
+        }
+    }
+
+    public boolean isIndeterminate() {
+        return mSpec.mIndeterminate;
+    }
+
+    /**
+     * Moves the spinning animation to the given time since it started, as if it had run that
+     * long. The frame shown only depends on this time, so a point hours ahead is reached at once.
+     * A running spinner continues from there. Main thread only.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void setAnimationTime(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException("Animation time must not be negative: "
+                    + elapsedMillis);
+        }
+        getCreator().setAnimationTime(elapsedMillis);
+        updateDrawable();
+    }
+
+    /**
+     * Moves the animation to the given time, see {@link #setAnimationTime(long)}, and draws the
+     * view on the canvas, for instance to render frames off screen in a test.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void renderFrameAt(@NonNull Canvas canvas, long elapsedMillis) {
+        setAnimationTime(elapsedMillis);
+        draw(canvas);
+    }
+
+    /**
+     * Sets the clock the animation reads its time from on every frame, instead of the frame
+     * time. The spinner continues from the point it is at. Main thread only.
+     *
+     * @param timeSource the clock, or {@code null} to use the frame time
+     */
+    public void setTimeSource(@Nullable TimeSource timeSource) {
+        mSpec.mTimeSource = timeSource;
+        if (mCreator != null) {
+            mCreator.setTimeSource(timeSource);
+            updateDrawable();
+        }
+    }
+
+    /**
+     * Shows the drawable of the creator if it changed, which the vector engine does when it
+     * falls back to draw a determinate arc.
+     */
+    private void updateDrawable() {
+        if (getDrawable() != mCreator.getDrawable()) {
+            setImageDrawable(mCreator.getDrawable());
+        }
     }
 
     /**
@@ -146,11 +627,38 @@ public class CircleLoadingView extends AppCompatImageView{
      * @param size  LARGE or NORMAL
      */
     public void setSize(@Size int size) {
+        mSpec.mSize = size;
+        mSpec.mDiameter = 0;
+        updateShadow();
+        if (mCreator == null) {
+            requestLayout();
+            return;
+        }
         setImageDrawable(null);
         mCreator.setSize(size);
         setImageDrawable(mCreator.getDrawable());
     }
 
+    /**
+     * Sets any diameter instead of one of the sizes. The ring, stroke and arrow are scaled from
+     * those of the nearest size, and the derived dimensions are shared by spinners of the same
+     * diameter.
+     *
+     * @param diameterDp diameter in dp, from 16 to 96
+     */
+    public void setDiameter(float diameterDp) {
+        SpinnerMetrics.checkDiameter(diameterDp);
+        mSpec.mDiameter = diameterDp;
+        updateShadow();
+        if (mCreator == null) {
+            requestLayout();
+            return;
+        }
+        setImageDrawable(null);
+        mCreator.setDiameter(diameterDp);
+        setImageDrawable(mCreator.getDrawable());
+    }
+
     /**
      * Set the background color of the progress spinner disc.
      *
@@ -167,28 +675,34 @@ public class CircleLoadingView extends AppCompatImageView{
      */
     public void setProgressBackgroundColorSchemeColor(@ColorInt int color) {
         setBackgroundColor(color);
-        mCreator.setBackgroundColor(color);
+        mSpec.mProgressBackgroundColor = color;
+        if (mCreator != null) {
+            mCreator.setBackgroundColor(color);
+        }
     }
 
 
     private interface ShadowHelperCompat {
-        Drawable createShadowShapeDrawable(Context context, CircleLoadingView circleLoadingView, int shadowColor);
-        int getHorizontalShadowPadding();
-        int getVerticalShadowPadding();
+        Drawable createShadowShapeDrawable(Context context, CircleLoadingView circleLoadingView,
+                SpinnerMetrics metrics, int shadowColor);
+        int getHorizontalShadowPadding(SpinnerMetrics metrics);
+        int getVerticalShadowPadding(SpinnerMetrics metrics);
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private static class LollipopShadowHelper implements ShadowHelperCompat {
 
         private static final int SHADOW_ELEVATION = 4;
-        private float mDensity;
 
         @Override
-        public Drawable createShadowShapeDrawable(Context context, final CircleLoadingView circleLoadingView, int shadowColor) {
-            mDensity = context.getResources().getDisplayMetrics().density;
+        public Drawable createShadowShapeDrawable(Context context, final CircleLoadingView circleLoadingView,
+                SpinnerMetrics metrics, int shadowColor) {
+            // The helper is shared by all views, which may be inflated on several threads, so it
+            // keeps no state of its own.
+            final float density = context.getResources().getDisplayMetrics().density;
             ShapeDrawable circle = new ShapeDrawable(new OvalShape());
             circle.getPaint().setColor(shadowColor);
-            final float elevation = SHADOW_ELEVATION * mDensity;
+            final float elevation = SHADOW_ELEVATION * density;
             circleLoadingView.setElevation(elevation);
 
             circleLoadingView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
@@ -211,12 +725,12 @@ public class CircleLoadingView extends AppCompatImageView{
         }
 
         @Override
-        public int getHorizontalShadowPadding() {
+        public int getHorizontalShadowPadding(SpinnerMetrics metrics) {
             return 0;
         }
 
         @Override
-        public int getVerticalShadowPadding() {
+        public int getVerticalShadowPadding(SpinnerMetrics metrics) {
             return 0;
         }
     }
@@ -224,67 +738,58 @@ public class CircleLoadingView extends AppCompatImageView{
     private static class ShadowHelper implements ShadowHelperCompat {
 
         private static final int KEY_SHADOW_COLOR = 0x1E000000;
-        private static final int FILL_SHADOW_COLOR = 0x3D000000;
-
-        // PX
-        private static final float X_OFFSET = 0f;
-        private static final float Y_OFFSET = 1.75f;
-        private static final float SHADOW_RADIUS = 3.5f;
-        private static final int RADIUS = 20;
-        private int mShadowRadius;
 
         @Override
-        public Drawable createShadowShapeDrawable(Context context, CircleLoadingView circleLoadingView, int shadowColor) {
-            final float density = context.getResources().getDisplayMetrics().density;
-            mShadowRadius = (int) (density * SHADOW_RADIUS);
-            final int diameter = (int) (RADIUS * density * 2);
-            final int shadowYOffset = (int) (density * Y_OFFSET);
-            final int shadowXOffset = (int) (density * X_OFFSET);
-            OvalShape oval = new OvalShadow(mShadowRadius, diameter);
+        public Drawable createShadowShapeDrawable(Context context, CircleLoadingView circleLoadingView,
+                SpinnerMetrics metrics, int shadowColor) {
+            // The helper is shared by all views, which may be inflated on several threads, so the
+            // disc and shadow sizes come from the metrics of each view instead of being kept.
+            final int diameter = (int) (metrics.mShadowDiscRadius * 2);
+            OvalShape oval = new OvalShadow(diameter, metrics.mShadowInset);
             ShapeDrawable circle = new ShapeDrawable(oval);
-            circleLoadingView.setLayerType(View.LAYER_TYPE_SOFTWARE, circle.getPaint());
-            circle.getPaint().setShadowLayer(mShadowRadius, shadowXOffset, shadowYOffset,
-                    KEY_SHADOW_COLOR);
-            final int padding = mShadowRadius;
+            // The paint color is the disc color; the shadow itself comes from a cached bitmap, so
+            // the view no longer needs a software layer.
+            circle.getPaint().setColor(shadowColor);
+            final int padding = metrics.mShadowInset;
             // set padding so the inner image sits correctly within the shadow.
             circleLoadingView.setPadding(padding, padding, padding, padding);
             return circle;
         }
 
         @Override
-        public int getHorizontalShadowPadding() {
-            return mShadowRadius * 2;
+        public int getHorizontalShadowPadding(SpinnerMetrics metrics) {
+            return metrics.mShadowInset * 2;
         }
 
         @Override
-        public int getVerticalShadowPadding() {
-            return mShadowRadius * 2;
+        public int getVerticalShadowPadding(SpinnerMetrics metrics) {
+            return metrics.mShadowInset * 2;
         }
 
-        private class OvalShadow extends OvalShape {
-            private RadialGradient mRadialGradient;
-            private Paint mShadowPaint;
-            private int mCircleDiameter;
+        private static class OvalShadow extends OvalShape {
+            private final int mCircleDiameter;
+            private final int mShadowRadius;
+            private Bitmap mBitmap;
+            private int mBitmapColor;
 
-            OvalShadow(int shadowRadius, int circleDiameter) {
+            OvalShadow(int circleDiameter, int shadowRadius) {
                 super();
-                mShadowPaint = new Paint();
-                mShadowRadius = shadowRadius;
                 mCircleDiameter = circleDiameter;
-                mRadialGradient = new RadialGradient(mCircleDiameter / 2, mCircleDiameter / 2,
-                        mShadowRadius, new int[] {
-                        FILL_SHADOW_COLOR, Color.TRANSPARENT
-                }, null, Shader.TileMode.CLAMP);
-                mShadowPaint.setShader(mRadialGradient);
+                mShadowRadius = shadowRadius;
             }
 
             @Override
             public void draw(Canvas canvas, Paint paint) {
+                final int color = paint.getColor();
+                if (mBitmap == null || mBitmapColor != color) {
+                    mBitmap = ShadowBitmapCache.obtain(mCircleDiameter, mShadowRadius,
+                            KEY_SHADOW_COLOR, color);
+                    mBitmapColor = color;
+                }
                 final float viewWidth = getWidth();
                 final float viewHeight = getHeight();
-                canvas.drawCircle(viewWidth / 2, viewHeight / 2, (mCircleDiameter / 2 + mShadowRadius),
-                        mShadowPaint);
-                canvas.drawCircle(viewWidth / 2, viewHeight / 2, (mCircleDiameter / 2), paint);
+                canvas.drawBitmap(mBitmap, (viewWidth - mBitmap.getWidth()) / 2,
+                        (viewHeight - mBitmap.getHeight()) / 2, null);
             }
         }
     }
@@ -1,4 +1,3 @@
-
 /*
  * Copyright 2018 The Android Open Source Project
  *
@@ -19,8 +18,6 @@ package com.xogrp.albert;
 
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Canvas;
@@ -28,21 +25,17 @@ import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
-import android.util.DisplayMetrics;
-import android.view.animation.Interpolator;
-import android.view.animation.LinearInterpolator;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.core.util.Preconditions;
-import androidx.interpolator.view.animation.FastOutSlowInInterpolator;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -61,14 +54,19 @@ import java.lang.annotation.RetentionPolicy;
  * be called with one of the {@link #DEFAULT} or {@link #LARGE} styles as its parameter. Doing it
  * so will update the arrow dimensions, ring size and stroke width to fit the one specified.
  *
+ * <p>The configuration (style, colors, stroke, arrow, background and rendering options) lives in
+ * a {@link ConstantState} shared by every drawable created from it with
+ * {@link ConstantState#newDrawable()}. A shared configuration is never modified: the first
+ * setter called on one of those drawables gives it a copy of its own. Animation state, frame
+ * rate and statistics always belong to a single drawable.
+ *
  * <p>If no center radius is set via {@link #setCenterRadius(float)} or {@link #setStyle(int)}
  * methods, CircularProgressDrawable will fill the bounds set via {@link #setBounds(Rect)}.
  */
 
 @RestrictTo(LIBRARY_GROUP)
-class CircularProgressDrawable extends Drawable implements Animatable {
-    private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
-    private static final Interpolator MATERIAL_INTERPOLATOR = new FastOutSlowInInterpolator();
+class CircularProgressDrawable extends Drawable implements Animatable,
+        SpinnerTicker.FrameCallback {
     private float mWidth;
     private float mHeight;
 
@@ -81,19 +79,9 @@ class CircularProgressDrawable extends Drawable implements Animatable {
     /** Maps to ProgressBar.Large style. */
     public static final int LARGE = 0;
 
-    private static final float CENTER_RADIUS_LARGE = 11f;
-    private static final float STROKE_WIDTH_LARGE = 3f;
-    private static final int ARROW_WIDTH_LARGE = 12;
-    private static final int ARROW_HEIGHT_LARGE = 6;
-
     /** Maps to ProgressBar default style. */
     public static final int DEFAULT = 1;
 
-    private static final float CENTER_RADIUS = 7.5f;
-    private static final float STROKE_WIDTH = 2.5f;
-    private static final int ARROW_WIDTH = 10;
-    private static final int ARROW_HEIGHT = 5;
-
     /**
      * This is the default set of colors that's used in spinner. {@link
      * #setColorSchemeColors(int...)} allows modifying colors.
@@ -102,65 +90,142 @@ class CircularProgressDrawable extends Drawable implements Animatable {
             Color.BLACK
     };
 
-    /**
-     * The value in the linear interpolator for animating the drawable at which
-     * the color transition should start
-     */
-    private static final float COLOR_CHANGE_OFFSET = 0.75f;
-    private static final float SHRINK_OFFSET = 0.5f;
-
     /** The duration of a single progress spin in milliseconds. */
-    private static final int ANIMATION_DURATION = 1332;
+    private static final int ANIMATION_DURATION = SpinnerGeometry.ANIMATION_DURATION;
 
-    /** Full rotation that's done for the animation duration in degrees. */
-    private static final float GROUP_FULL_ROTATION = 1080f / 5f;
-
-    /** The indicator ring, used to manage animation state. */
-    private final Ring mRing;
+    /** Configuration, possibly shared with other drawables. */
+    private ProgressState mProgressState;
 
-    /** Canvas rotation in degrees. */
-    private float mRotation;
+    /** Animation state, advanced by {@link SpinnerGeometry}. */
+    private final SpinnerState mState;
 
-    /** Maximum length of the progress arc during the animation. */
-    private static final float MAX_PROGRESS_ARC = .8f;
-    /** Minimum length of the progress arc during the animation. */
-    private static final float MIN_PROGRESS_ARC = .01f;
+    /** The indicator ring, used to draw the animation state. */
+    private final Ring mRing;
 
-    /** Rotation applied to ring during the animation, to complete it to a full circle. */
-    private static final float RING_ROTATION = 1f - (MAX_PROGRESS_ARC - MIN_PROGRESS_ARC);
+    /** Marks a start time that is taken from the next frame. */
+    private static final long UNSET_START_TIME = -1;
 
     private Resources mResources;
-    private Animator mAnimator;
-    @SuppressWarnings("WeakerAccess") /* synthetic access */
-            float mRotationCount;
-    @SuppressWarnings("WeakerAccess") /* synthetic access */
-            boolean mFinishing;
+    private boolean mRunning;
+    /** Frame time at which the animation started, moved by pauses and seeks. */
+    private long mStartTime = UNSET_START_TIME;
+    /** Frame time of the last computed frame. */
+    private long mLastFrameTime;
+    /** Time into the animation to continue from once the next frame arrives. */
+    private long mResumePhase;
+    /** Set while the arc visible when the animation started is being closed. */
+    private boolean mClosingArc;
+    /**
+     * Whether the cycles were begun since the arc was last set, so seeking a stopped animation
+     * again closes the same arc instead of the one of the previous seek.
+     */
+    private boolean mCyclesBegun;
+    /** Clock frames are computed from instead of the frame time, or {@code null}. */
+    private TimeSource mTimeSource;
+    private boolean mPaused;
+    /** Whether the arc shows {@link #mProgress} instead of spinning. */
+    private boolean mDeterminate;
+    /** Progress the determinate arc moves toward, from [0..1]. */
+    private float mProgress;
+    /** Progress the determinate arc shows. */
+    private float mShownProgress;
+    /** Set while the spinning arc morphs into the determinate one. */
+    private boolean mMorphing;
+    /** Frame time at which the morph started. */
+    private long mMorphStartTime = UNSET_START_TIME;
+    /** Baked motion of a cycle, or {@code null} to evaluate it on every frame. */
+    private SpinnerKeyframes mKeyframes;
+    /** Skips vsyncs beyond the target frame rate. */
+    private final FrameRateLimiter mFrameRateLimiter = new FrameRateLimiter();
+    /** Opt-in frame statistics, {@code null} unless enabled. */
+    private FrameStats mFrameStats;
+    /** Area covered by the ring and arrow in the last invalidated frame. */
+    private final Rect mRingBounds = new Rect();
+    /** Union of the ring area of the previous and the current frame. */
+    private final Rect mDirtyBounds = new Rect();
+    private final Rect mTempRect = new Rect();
 
     /**
      * @param context application context
      */
     public CircularProgressDrawable(@NonNull Context context) {
         mResources = context.getResources();
+        mProgressState = new ProgressState(mResources);
 
-        mRing = new Ring();
-        mRing.setColors(COLORS);
-
-        setStrokeWidth(STROKE_WIDTH);
-        setupAnimators();
+        mState = new SpinnerState(COLORS);
+        mRing = new Ring(mState);
 
         setStyle(DEFAULT);
     }
 
-    /** Sets all parameters at once in dp. */
-    private void setSizeParameters(float centerRadius, float strokeWidth, float arrowWidth,
-                                   float arrowHeight) {
+    private CircularProgressDrawable(ProgressState state, Resources res) {
+        mResources = res;
+        mProgressState = state;
+
+        mState = new SpinnerState(state.mColors);
+        mRing = new Ring(mState);
+
+        mWidth = state.mWidth;
+        mHeight = state.mHeight;
+        mRing.setStrokeWidth(state.mStrokeWidth);
+        mRing.setCenterRadius(state.mCenterRadius);
+        mRing.setStrokeCap(state.mStrokeCap);
+        mRing.setArrowDimensions(state.mArrowWidth, state.mArrowHeight);
+        mRing.setShowArrow(state.mShowArrow);
+        mRing.setBackgroundColor(state.mBackgroundColor);
+        mRing.setUseAtlas(state.mUseSpriteAtlas);
+        mRing.setAlpha(state.mAlpha);
+        mState.setPerceptualColors(state.mPerceptualColors);
+        mKeyframes = state.mKeyframes;
+    }
+
+    /**
+     * Returns the configuration for a setter to modify, copying it first if it is shared.
+     */
+    private ProgressState mutableState() {
+        if (mProgressState.mShared) {
+            mProgressState = new ProgressState(mProgressState);
+        }
+        return mProgressState;
+    }
+
+    /**
+     * The returned state is shared from now on, so the next setter called on this drawable
+     * copies it instead of changing the drawables created from it.
+     */
+    @Override
+    public ConstantState getConstantState() {
+        mProgressState.mShared = true;
+        return mProgressState;
+    }
+
+    /**
+     * Makes sure the configuration of this drawable is not shared. Setters copy a shared
+     * configuration anyway, so this is only needed to follow the {@link Drawable} contract.
+     */
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        mutableState();
+        return this;
+    }
+
+    /** Sets the size and all ring parameters at once. */
+    private void setMetrics(SpinnerMetrics metrics) {
         final Ring ring = mRing;
-        final DisplayMetrics metrics = mResources.getDisplayMetrics();
-        final float screenDensity = metrics.density;
-        ring.setStrokeWidth(strokeWidth * screenDensity);
-        ring.setCenterRadius(centerRadius * screenDensity);
+        final ProgressState state = mutableState();
+        mWidth = metrics.mDiameter;
+        mHeight = metrics.mDiameter;
+        state.mWidth = mWidth;
+        state.mHeight = mHeight;
+        state.mStrokeWidth = metrics.mStrokeWidth;
+        state.mCenterRadius = metrics.mCenterRadius;
+        state.mArrowWidth = metrics.mArrowWidth;
+        state.mArrowHeight = metrics.mArrowHeight;
+        ring.setStrokeWidth(state.mStrokeWidth);
+        ring.setCenterRadius(state.mCenterRadius);
         ring.setColorIndex(0);
-        ring.setArrowDimensions(arrowWidth * screenDensity, arrowHeight * screenDensity);
+        ring.setArrowDimensions(state.mArrowWidth, state.mArrowHeight);
     }
 
     @Override
@@ -180,20 +245,19 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param size one of {@link #LARGE} or {@link #DEFAULT}
      */
     public void setStyle(@ProgressDrawableSize int size) {
-        final DisplayMetrics metrics = mResources.getDisplayMetrics();
-        final float screenDensity = metrics.density;
-
-        if (size == LARGE) {
-            mWidth = 56 * screenDensity;
-            mHeight = 56 * screenDensity;
-            setSizeParameters(CENTER_RADIUS_LARGE, STROKE_WIDTH_LARGE, ARROW_WIDTH_LARGE,
-                    ARROW_HEIGHT_LARGE);
-        } else {
-            mWidth = 40 * screenDensity;
-            mHeight = 40 * screenDensity;
-            setSizeParameters(CENTER_RADIUS, STROKE_WIDTH, ARROW_WIDTH, ARROW_HEIGHT);
-        }
+        setDiameter(SpinnerMetrics.getDiameter(size == LARGE));
+    }
 
+    /**
+     * Sets the overall size for the progress spinner to any diameter. The radius and stroke
+     * width of the ring and the arrow dimensions are scaled from those of the nearest style.
+     *
+     * @param diameter diameter in dp, from 16 to 96
+     */
+    public void setDiameter(float diameter) {
+        SpinnerMetrics.checkDiameter(diameter);
+        setMetrics(SpinnerMetrics.obtain(SpinnerGeometry.STYLE_CIRCULAR, diameter,
+                mResources.getDisplayMetrics().density));
         invalidateSelf();
     }
 
@@ -212,6 +276,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param strokeWidth stroke width in pixels
      */
     public void setStrokeWidth(float strokeWidth) {
+        mutableState().mStrokeWidth = strokeWidth;
         mRing.setStrokeWidth(strokeWidth);
         invalidateSelf();
     }
@@ -232,6 +297,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param centerRadius center radius in pixels
      */
     public void setCenterRadius(float centerRadius) {
+        mutableState().mCenterRadius = centerRadius;
         mRing.setCenterRadius(centerRadius);
         invalidateSelf();
     }
@@ -242,6 +308,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param strokeCap stroke cap
      */
     public void setStrokeCap(@NonNull Paint.Cap strokeCap) {
+        mutableState().mStrokeCap = strokeCap;
         mRing.setStrokeCap(strokeCap);
         invalidateSelf();
     }
@@ -281,6 +348,9 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param height distance from tip of the arrow to its baseline in pixels
      */
     public void setArrowDimensions(float width, float height) {
+        final ProgressState state = mutableState();
+        state.mArrowWidth = width;
+        state.mArrowHeight = height;
         mRing.setArrowDimensions(width, height);
         invalidateSelf();
     }
@@ -300,6 +370,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param show {@code true} if the arrow should be drawn, {@code false} otherwise
      */
     public void setArrowEnabled(boolean show) {
+        mutableState().mShowArrow = show;
         mRing.setShowArrow(show);
         invalidateSelf();
     }
@@ -350,6 +421,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param end ending position of the arc from [0..1]
      */
     public void setStartEndTrim(float start, float end) {
+        mCyclesBegun = false;
         mRing.setStartTrim(start);
         mRing.setEndTrim(end);
         invalidateSelf();
@@ -391,6 +463,7 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param color an ARGB color
      */
     public void setBackgroundColor(int color) {
+        mutableState().mBackgroundColor = color;
         mRing.setBackgroundColor(color);
         invalidateSelf();
     }
@@ -412,22 +485,150 @@ class CircularProgressDrawable extends Drawable implements Animatable {
      * @param colors list of ARGB colors to be used in the spinner
      */
     public void setColorSchemeColors(@NonNull int... colors) {
-        mRing.setColors(colors);
+        // Copied, since the array may end up shared with other drawables.
+        final int[] scheme = colors.clone();
+        mutableState().mColors = scheme;
+        mRing.setColors(scheme);
         mRing.setColorIndex(0);
         invalidateSelf();
     }
 
+    /**
+     * Blends between consecutive colors of the scheme in the perceptual OKLab color space
+     * instead of per channel. Both are precomputed, so neither costs more per frame.
+     *
+     * @param perceptual {@code true} to blend in OKLab
+     */
+    public void setPerceptualColorBlending(boolean perceptual) {
+        mutableState().mPerceptualColors = perceptual;
+        mState.setPerceptualColors(perceptual);
+        invalidateSelf();
+    }
+
+    public boolean isPerceptualColorBlending() {
+        return mState.mPerceptualColors;
+    }
+
+    /**
+     * Switches the indeterminate animation to baked keyframe tables sampled at the given
+     * resolution instead of evaluating the interpolator on every frame. A resolution too coarse
+     * to stay within {@link SpinnerKeyframes#MAX_ERROR} of the live math keeps the live math.
+     *
+     * @param resolution samples per cycle, or 0 to use the live math
+     * @see SpinnerKeyframes#DEFAULT_RESOLUTION
+     */
+    public void setKeyframeResolution(int resolution) {
+        mKeyframes = resolution > 0 ? SpinnerKeyframes.obtain(SpinnerGeometry.STYLE_CIRCULAR,
+                SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, resolution) : null;
+        mutableState().mKeyframes = mKeyframes;
+    }
+
+    /**
+     * Returns the samples per cycle of the baked keyframes, or 0 if the live math is used.
+     */
+    public int getKeyframeResolution() {
+        return mKeyframes != null ? mKeyframes.getResolution() : 0;
+    }
+
+    /**
+     * Plays the arc back from a shared {@link SpinnerAtlas} of pre-rendered frames instead of
+     * stroking it on every frame, which is cheaper on low-end GPUs. Arcs outside the range of the
+     * atlas, such as a large arc set through {@link #setStartEndTrim(float, float)}, are still
+     * drawn directly.
+     *
+     * @param enabled {@code true} to draw from the atlas
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        mutableState().mUseSpriteAtlas = enabled;
+        mRing.setUseAtlas(enabled);
+        invalidateSelf();
+    }
+
+    /**
+     * Returns {@code true} if the arc is drawn from a sprite atlas.
+     */
+    public boolean isSpriteAtlasEnabled() {
+        return mRing.getUseAtlas();
+    }
+
+    /**
+     * Caps how often the running animation redraws. Skipped vsyncs don't change the timing of
+     * the animation.
+     *
+     * @param frameRate frames per second, {@link FrameRateLimiter#FRAME_RATE_DISPLAY} to draw on
+     *                  every vsync or {@link FrameRateLimiter#FRAME_RATE_DEFAULT} to follow the
+     *                  process-wide default
+     */
+    public void setFrameRate(int frameRate) {
+        mFrameRateLimiter.setFrameRate(frameRate);
+    }
+
+    public int getFrameRate() {
+        return mFrameRateLimiter.getFrameRate();
+    }
+
+    /**
+     * Starts or stops recording {@link FrameStats} for this drawable. Recording does not
+     * allocate once enabled.
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            mFrameStats = null;
+        } else if (mFrameStats == null) {
+            mFrameStats = new FrameStats();
+        }
+    }
+
+    /**
+     * Returns the frame statistics of this drawable, or {@code null} unless enabled with
+     * {@link #setFrameStatsEnabled(boolean)}.
+     */
+    @Nullable
+    public FrameStats getFrameStats() {
+        return mFrameStats;
+    }
+
     @Override
     public void draw(Canvas canvas) {
+        final FrameStats stats = mFrameStats;
+        final long drawStartNanos = stats != null ? System.nanoTime() : 0;
         final Rect bounds = getBounds();
         canvas.save();
-        canvas.rotate(mRotation, bounds.exactCenterX(), bounds.exactCenterY());
+        canvas.rotate(mState.mGroupRotation, bounds.exactCenterX(), bounds.exactCenterY());
         mRing.draw(canvas, bounds);
         canvas.restore();
+        if (stats != null) {
+            stats.recordDraw(System.nanoTime() - drawStartNanos);
+        }
+    }
+
+    /**
+     * Limits the damage of every invalidation to the ring and its arrow. The area covered by the
+     * previous frame is included, so a ring that changed size or lost its arrow is cleared too.
+     */
+    @Override
+    public void invalidateSelf() {
+        final Rect current = mTempRect;
+        mRing.getRingBounds(getBounds(), current);
+        mDirtyBounds.set(mRingBounds);
+        mDirtyBounds.union(current);
+        mRingBounds.set(current);
+        super.invalidateSelf();
+    }
+
+    /**
+     * Returns the area invalidated by the last {@link #invalidateSelf()}, which is the union of
+     * the ring and arrow bounds of the previous and the current frame.
+     */
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return mDirtyBounds;
     }
 
     @Override
     public void setAlpha(int alpha) {
+        mutableState().mAlpha = alpha;
         mRing.setAlpha(alpha);
         invalidateSelf();
     }
@@ -443,14 +644,6 @@ class CircularProgressDrawable extends Drawable implements Animatable {
         invalidateSelf();
     }
 
-    private void setRotation(float rotation) {
-        mRotation = rotation;
-    }
-
-    private float getRotation() {
-        return mRotation;
-    }
-
     @Override
     public int getOpacity() {
         return PixelFormat.TRANSLUCENT;
@@ -458,219 +651,403 @@ class CircularProgressDrawable extends Drawable implements Animatable {
 
     @Override
     public boolean isRunning() {
-        return mAnimator.isRunning();
+        return mRunning;
     }
 
     /**
-     * Starts the animation for the spinner.
+     * Starts the animation for the spinner. Frames are driven by the shared {@link SpinnerTicker}.
      */
     @Override
     public void start() {
-        mAnimator.cancel();
-        mRing.storeOriginals();
-        // Already showing some part of the ring
-        if (mRing.getEndTrim() != mRing.getStartTrim()) {
-            mFinishing = true;
-            mAnimator.setDuration(ANIMATION_DURATION / 2);
-            mAnimator.start();
+        if (mDeterminate) {
+            jumpToProgress();
         } else {
-            mRing.setColorIndex(0);
-            mRing.resetOriginals();
-            mAnimator.setDuration(ANIMATION_DURATION);
-            mAnimator.start();
+            beginCycles();
+        }
+        mFrameRateLimiter.reset();
+        if (mFrameStats != null) {
+            mFrameStats.restartIntervals();
         }
+        mPaused = false;
+        mRunning = true;
+        SpinnerTicker.getInstance().register(this);
     }
 
     /**
-     * Stops the animation for the spinner.
+     * Sets the state up for the first spinning cycle, which closes an arc that is already visible
+     * before the spinner starts.
      */
-    @Override
-    public void stop() {
-        mAnimator.cancel();
-        setRotation(0);
-        mRing.setShowArrow(false);
-        mRing.setColorIndex(0);
-        mRing.resetOriginals();
+    private void beginCycles() {
+        SpinnerGeometry.beginAnimation(mState);
+        mClosingArc = mState.mCloseArc;
+        mCyclesBegun = true;
+        mStartTime = UNSET_START_TIME;
+        mResumePhase = 0;
+    }
+
+    /**
+     * Moves the spinning animation to the given time since it started, as if it had run that
+     * long. The frame only depends on this time, so hours ahead cost the same as the next frame.
+     * A running animation continues from there on its next frame; a stopped one shows the frame
+     * until it is started, which starts from the beginning again. Has no effect on a
+     * determinate arc.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void setAnimationTime(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException("Animation time must not be negative: "
+                    + elapsedMillis);
+        }
+        if (mDeterminate) {
+            return;
+        }
+        if (!mRunning && !mCyclesBegun) {
+            beginCycles();
+        }
+        computeFrameAt(elapsedMillis);
+        mResumePhase = elapsedMillis;
+        mStartTime = UNSET_START_TIME;
         invalidateSelf();
     }
 
-    // Adapted from ArgbEvaluator.java
-    private int evaluateColorChange(float fraction, int startValue, int endValue) {
-        int startA = (startValue >> 24) & 0xff;
-        int startR = (startValue >> 16) & 0xff;
-        int startG = (startValue >> 8) & 0xff;
-        int startB = startValue & 0xff;
+    /**
+     * Moves the animation to the given time, see {@link #setAnimationTime(long)}, and draws that
+     * frame on the canvas, for instance to render frames off screen without waiting for them.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void renderFrameAt(@NonNull Canvas canvas, long elapsedMillis) {
+        setAnimationTime(elapsedMillis);
+        draw(canvas);
+    }
+
+    /**
+     * Sets the clock the animation reads its time from on every frame, instead of the frame time
+     * of the {@link SpinnerTicker}. Frames are still paced by the ticker. The animation continues
+     * from the point it is at, read from the new clock from the next frame on.
+     *
+     * @param timeSource the clock, or {@code null} to use the frame time
+     */
+    public void setTimeSource(@Nullable TimeSource timeSource) {
+        if (mStartTime != UNSET_START_TIME) {
+            mResumePhase = mLastFrameTime - mStartTime;
+            mStartTime = UNSET_START_TIME;
+        }
+        mTimeSource = timeSource;
+        mFrameRateLimiter.reset();
+    }
+
+    /**
+     * Shows the determinate arc at the latest progress right away, without a morph.
+     */
+    private void jumpToProgress() {
+        SpinnerGeometry.startDeterminateMorph(mState);
+        mShownProgress = mProgress;
+        mMorphing = false;
+        SpinnerGeometry.computeDeterminateFrame(1f, mProgress, mState);
+    }
 
-        int endA = (endValue >> 24) & 0xff;
-        int endR = (endValue >> 16) & 0xff;
-        int endG = (endValue >> 8) & 0xff;
-        int endB = endValue & 0xff;
+    /**
+     * Shows a determinate arc covering the given fraction of the ring, starting at its top. A
+     * spinning arc morphs into it without restarting the animation. Later values are eased
+     * toward on the following frames, so calling this more than once per frame costs no extra
+     * draw. Main thread only; {@link CircleLoadingView#setProgress(float)} can be called from any
+     * thread.
+     *
+     * @param progress progress from [0..1]
+     */
+    public void setProgress(float progress) {
+        mProgress = Math.max(0f, Math.min(1f, progress));
+        if (!mDeterminate) {
+            setIndeterminate(false);
+        } else if (!mRunning) {
+            jumpToProgress();
+            invalidateSelf();
+        }
+    }
 
-        return (startA + (int) (fraction * (endA - startA))) << 24
-                | (startR + (int) (fraction * (endR - startR))) << 16
-                | (startG + (int) (fraction * (endG - startG))) << 8
-                | (startB + (int) (fraction * (endB - startB)));
+    /**
+     * Returns the latest progress set with {@link #setProgress(float)}.
+     */
+    public float getProgress() {
+        return mProgress;
     }
 
     /**
-     * Update the ring color if this is within the last 25% of the animation.
-     * The new ring color will be a translation from the starting ring color to
-     * the next color.
+     * Switches between the spinning arc and the determinate arc of {@link #setProgress(float)}.
+     * While running, the determinate arc is morphed into, and leaving it closes the arc before
+     * the spinner starts again, the same as a visible arc when the animation is started.
+     *
+     * @param indeterminate {@code true} to spin, the default
      */
-    @SuppressWarnings("WeakerAccess") /* synthetic access */
-    void updateRingColor(float interpolatedTime, Ring ring) {
-        if (interpolatedTime > COLOR_CHANGE_OFFSET) {
-            ring.setColor(evaluateColorChange((interpolatedTime - COLOR_CHANGE_OFFSET)
-                            / (1f - COLOR_CHANGE_OFFSET), ring.getStartingColor(),
-                    ring.getNextColor()));
+    public void setIndeterminate(boolean indeterminate) {
+        if (mDeterminate != indeterminate) {
+            return;
+        }
+        mDeterminate = !indeterminate;
+        if (!mRunning) {
+            if (mDeterminate) {
+                jumpToProgress();
+            } else {
+                mState.resetOriginals();
+                mCyclesBegun = false;
+            }
+            invalidateSelf();
+        } else if (mDeterminate) {
+            SpinnerGeometry.startDeterminateMorph(mState);
+            mShownProgress = mProgress;
+            mMorphing = true;
+            mMorphStartTime = UNSET_START_TIME;
         } else {
-            ring.setColor(ring.getStartingColor());
-        }
-    }
-
-    /**
-     * Update the ring start and end trim if the animation is finishing (i.e. it started with
-     * already visible progress, so needs to shrink back down before starting the spinner).
-     */
-    private void applyFinishTranslation(float interpolatedTime, Ring ring) {
-        // shrink back down and complete a full rotation before
-        // starting other circles
-        // Rotation goes between [0..1].
-        updateRingColor(interpolatedTime, ring);
-        float targetRotation = (float) (Math.floor(ring.getStartingRotation() / MAX_PROGRESS_ARC)
-                + 1f);
-        final float startTrim = ring.getStartingStartTrim()
-                + (ring.getStartingEndTrim() - MIN_PROGRESS_ARC - ring.getStartingStartTrim())
-                * interpolatedTime;
-        ring.setStartTrim(startTrim);
-        ring.setEndTrim(ring.getStartingEndTrim());
-        final float rotation = ring.getStartingRotation()
-                + ((targetRotation - ring.getStartingRotation()) * interpolatedTime);
-        ring.setRotation(rotation);
-    }
-
-    /**
-     * Update the ring start and end trim according to current time of the animation.
-     */
-    @SuppressWarnings("WeakerAccess") /* synthetic access */
-    void applyTransformation(float interpolatedTime, Ring ring, boolean lastFrame) {
-        if (mFinishing) {
-            applyFinishTranslation(interpolatedTime, ring);
-            // Below condition is to work around a ValueAnimator issue where onAnimationRepeat is
-            // called before last frame (1f).
-        } else if (interpolatedTime != 1f || lastFrame) {
-            final float startingRotation = ring.getStartingRotation();
-            float startTrim, endTrim;
-
-            if (interpolatedTime < SHRINK_OFFSET) { // Expansion occurs on first half of animation
-                final float scaledTime = interpolatedTime / SHRINK_OFFSET;
-                startTrim = ring.getStartingStartTrim();
-                endTrim = startTrim + ((MAX_PROGRESS_ARC - MIN_PROGRESS_ARC)
-                        * MATERIAL_INTERPOLATOR.getInterpolation(scaledTime) + MIN_PROGRESS_ARC);
-            } else { // Shrinking occurs on second half of animation
-                float scaledTime = (interpolatedTime - SHRINK_OFFSET) / (1f - SHRINK_OFFSET);
-                endTrim = ring.getStartingStartTrim() + (MAX_PROGRESS_ARC - MIN_PROGRESS_ARC);
-                startTrim = endTrim - ((MAX_PROGRESS_ARC - MIN_PROGRESS_ARC)
-                        * (1f - MATERIAL_INTERPOLATOR.getInterpolation(scaledTime))
-                        + MIN_PROGRESS_ARC);
+            beginCycles();
+        }
+    }
+
+    public boolean isIndeterminate() {
+        return !mDeterminate;
+    }
+
+    /**
+     * Advances the morph into the determinate arc and eases the arc toward the latest progress.
+     *
+     * @return {@code true} if the arc changed since the last frame
+     */
+    private boolean computeDeterminateFrame(long frameTimeMillis) {
+        final float shown = SpinnerGeometry.approachProgress(mShownProgress, mProgress,
+                frameTimeMillis - mLastFrameTime);
+        float morphFraction = 1f;
+        if (mMorphing) {
+            if (mMorphStartTime == UNSET_START_TIME) {
+                mMorphStartTime = frameTimeMillis;
             }
+            morphFraction = Math.min(1f, (frameTimeMillis - mMorphStartTime)
+                    / (float) SpinnerGeometry.MORPH_DURATION);
+            mMorphing = morphFraction < 1f;
+        } else if (shown == mShownProgress) {
+            return false;
+        }
+        mShownProgress = shown;
+        SpinnerGeometry.computeDeterminateFrame(morphFraction, shown, mState);
+        return true;
+    }
 
-            final float rotation = startingRotation + (RING_ROTATION * interpolatedTime);
-            float groupRotation = GROUP_FULL_ROTATION * (interpolatedTime + mRotationCount);
+    /**
+     * Stops the animation for the spinner.
+     */
+    @Override
+    public void stop() {
+        mRunning = false;
+        mPaused = false;
+        mCyclesBegun = false;
+        SpinnerTicker.getInstance().unregister(this);
+        mState.mGroupRotation = 0;
+        mState.mFinishing = false;
+        mRing.setShowArrow(false);
+        mState.setColorIndex(0);
+        mState.resetOriginals();
+        invalidateSelf();
+    }
 
-            ring.setStartTrim(startTrim);
-            ring.setEndTrim(endTrim);
-            ring.setRotation(rotation);
-            setRotation(groupRotation);
+    /**
+     * Update the ring start and end trim, rotation and color according to the time since the
+     * animation started.
+     */
+    private void computeFrameAt(long elapsedMillis) {
+        final boolean closing = SpinnerGeometry.computeFrameAt(SpinnerGeometry.STYLE_CIRCULAR,
+                elapsedMillis, SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, mKeyframes, mState);
+        if (mClosingArc && !closing) {
+            // finished closing the last ring from the swipe gesture; go
+            // into progress mode
+            mClosingArc = false;
+            mRing.setShowArrow(false);
         }
     }
 
-    private void setupAnimators() {
-        final Ring ring = mRing;
-        final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float interpolatedTime = (float) animation.getAnimatedValue();
-                updateRingColor(interpolatedTime, ring);
-                applyTransformation(interpolatedTime, ring, false);
-                invalidateSelf();
-            }
-        });
-        animator.setRepeatCount(ValueAnimator.INFINITE);
-        animator.setRepeatMode(ValueAnimator.RESTART);
-        animator.setInterpolator(LINEAR_INTERPOLATOR);
-        animator.addListener(new Animator.AnimatorListener() {
-
-            @Override
-            public void onAnimationStart(Animator animator) {
-                mRotationCount = 0;
+    @Override
+    public boolean doFrame(long frameTimeMillis) {
+        if (!mRunning) {
+            return false;
+        }
+        if (getCallback() == null) {
+            // The host let go of this drawable; stop ticking until it is started again.
+            mRunning = false;
+            return false;
+        }
+        final TimeSource timeSource = mTimeSource;
+        final long now = timeSource != null ? timeSource.uptimeMillis() : frameTimeMillis;
+        if (mStartTime == UNSET_START_TIME) {
+            mStartTime = now - mResumePhase;
+            mResumePhase = 0;
+        }
+        if (!mFrameRateLimiter.shouldDraw(frameTimeMillis)) {
+            // Skipped vsync; the next drawn frame is computed for its own time.
+            return true;
+        }
+        final FrameStats stats = mFrameStats;
+        final long updateStartNanos = stats != null ? System.nanoTime() : 0;
+        if (mDeterminate) {
+            if (!computeDeterminateFrame(now)) {
+                // Settled on the latest progress; nothing to draw.
+                mLastFrameTime = now;
+                return true;
             }
+        } else {
+            // A frame after a stall lands straight on the point the animation should be at.
+            computeFrameAt(now - mStartTime);
+        }
+        mLastFrameTime = now;
+        if (stats != null) {
+            final int frameRate = mFrameRateLimiter.getEffectiveFrameRate();
+            stats.recordFrame(frameTimeMillis, System.nanoTime() - updateStartNanos,
+                    frameRate > 0 ? 1000f / frameRate : stats.getVsyncIntervalMillis());
+        }
+        invalidateSelf();
+        return true;
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animator) {
-                // do nothing
-            }
+    /**
+     * Stops receiving frames while the spinner can't be seen, keeping the point of the cycle it
+     * was at. Has no effect unless the animation is running.
+     */
+    public void pause() {
+        if (!mRunning || mPaused) {
+            return;
+        }
+        mPaused = true;
+        SpinnerTicker.getInstance().unregister(this);
+        if (mStartTime != UNSET_START_TIME) {
+            mResumePhase = mLastFrameTime - mStartTime;
+            mStartTime = UNSET_START_TIME;
+        }
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                // do nothing
-            }
+    /**
+     * Continues a paused animation from the point of the cycle it was paused at, without a jump.
+     */
+    public void resume() {
+        if (!mRunning || !mPaused) {
+            return;
+        }
+        mPaused = false;
+        mFrameRateLimiter.reset();
+        if (mFrameStats != null) {
+            mFrameStats.restartIntervals();
+        }
+        SpinnerTicker.getInstance().register(this);
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animator) {
-                applyTransformation(1f, ring, true);
-                ring.storeOriginals();
-                ring.goToNextColor();
-                if (mFinishing) {
-                    // finished closing the last ring from the swipe gesture; go
-                    // into progress mode
-                    mFinishing = false;
-                    animator.cancel();
-                    animator.setDuration(ANIMATION_DURATION);
-                    animator.start();
-                    ring.setShowArrow(false);
-                } else {
-                    mRotationCount = mRotationCount + 1;
-                }
-            }
-        });
-        mAnimator = animator;
+    /**
+     * Returns {@code true} if the animation is running but paused.
+     */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Configuration of a drawable, shared by the drawables created from it. Never modified once
+     * {@link #mShared} is set.
+     */
+    private static final class ProgressState extends ConstantState {
+        final Resources mResources;
+        float mWidth;
+        float mHeight;
+        float mStrokeWidth;
+        float mCenterRadius;
+        Paint.Cap mStrokeCap = Paint.Cap.SQUARE;
+        float mArrowWidth;
+        float mArrowHeight;
+        boolean mShowArrow;
+        /** Colors of the scheme, never modified once set. */
+        int[] mColors = COLORS;
+        int mBackgroundColor = Color.TRANSPARENT;
+        boolean mPerceptualColors;
+        boolean mUseSpriteAtlas;
+        SpinnerKeyframes mKeyframes;
+        int mAlpha = 255;
+        /** Set once the state may be referenced by more than one drawable. */
+        boolean mShared;
+
+        ProgressState(Resources res) {
+            mResources = res;
+        }
+
+        ProgressState(ProgressState orig) {
+            mResources = orig.mResources;
+            mWidth = orig.mWidth;
+            mHeight = orig.mHeight;
+            mStrokeWidth = orig.mStrokeWidth;
+            mCenterRadius = orig.mCenterRadius;
+            mStrokeCap = orig.mStrokeCap;
+            mArrowWidth = orig.mArrowWidth;
+            mArrowHeight = orig.mArrowHeight;
+            mShowArrow = orig.mShowArrow;
+            mColors = orig.mColors;
+            mBackgroundColor = orig.mBackgroundColor;
+            mPerceptualColors = orig.mPerceptualColors;
+            mUseSpriteAtlas = orig.mUseSpriteAtlas;
+            mKeyframes = orig.mKeyframes;
+            mAlpha = orig.mAlpha;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return newDrawable(mResources);
+        }
+
+        /**
+         * Sizes are kept in pixels as set on the original drawable, since they may have been set
+         * directly rather than from a style.
+         */
+        @NonNull
+        @Override
+        public Drawable newDrawable(@Nullable Resources res) {
+            mShared = true;
+            return new CircularProgressDrawable(this, res != null ? res : mResources);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
     }
 
     /**
      * A private class to do all the drawing of CircularProgressDrawable, which includes background,
-     * progress spinner and the arrow. This class is to separate drawing from animation.
+     * progress spinner and the arrow. This class is to separate drawing from animation, whose
+     * state lives in {@link SpinnerState}.
      */
     private static class Ring {
         final RectF mTempBounds = new RectF();
         final Paint mPaint = new Paint();
         final Paint mArrowPaint = new Paint();
         final Paint mCirclePaint = new Paint();
+        final ArrowPathCache mArrowPaths = new ArrowPathCache();
+        final Paint mAtlasPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
-        float mStartTrim = 0f;
-        float mEndTrim = 0f;
-        float mRotation = 0f;
+        final SpinnerState mState;
         float mStrokeWidth = 5f;
 
-        int[] mColors;
-        // mColorIndex represents the offset into the available mColors that the
-        // progress circle should currently display. As the progress circle is
-        // animating, the mColorIndex moves by one to the next available color.
-        int mColorIndex;
-        float mStartingStartTrim;
-        float mStartingEndTrim;
-        float mStartingRotation;
         boolean mShowArrow;
-        Path mArrow;
         float mArrowScale = 1;
         float mRingCenterRadius;
         int mArrowWidth;
         int mArrowHeight;
         int mAlpha = 255;
-        int mCurrentColor;
 
-        Ring() {
+        boolean mUseAtlas;
+        /** Whether the geometry changed since {@link #mAtlas} was obtained. */
+        boolean mAtlasStale = true;
+        /** Atlas matching the geometry of the last frame, {@code null} if it would be too large. */
+        SpinnerAtlas mAtlas;
+        float mAtlasArcRadius;
+        float mAtlasArrowWidth;
+        float mAtlasArrowHeight;
+
+        Ring(SpinnerState state) {
+            mState = state;
+
             mPaint.setStrokeCap(Paint.Cap.SQUARE);
             mPaint.setAntiAlias(true);
             mPaint.setStyle(Style.STROKE);
@@ -690,10 +1067,13 @@ class CircularProgressDrawable extends Drawable implements Animatable {
         void setArrowDimensions(float width, float height) {
             mArrowWidth = (int) width;
             mArrowHeight = (int) height;
+            mArrowPaths.setDimensions(mArrowWidth, mArrowHeight);
         }
 
         void setStrokeCap(Paint.Cap strokeCap) {
             mPaint.setStrokeCap(strokeCap);
+            mAtlasStale = true;
+            mAtlas = null;
         }
 
         Paint.Cap getStrokeCap() {
@@ -713,23 +1093,16 @@ class CircularProgressDrawable extends Drawable implements Animatable {
          */
         void draw(Canvas c, Rect bounds) {
             final RectF arcBounds = mTempBounds;
-            float arcRadius = mRingCenterRadius + mStrokeWidth / 2f;
-            if (mRingCenterRadius <= 0) {
-                // If center radius is not set, fill the bounds
-                arcRadius = Math.min(bounds.width(), bounds.height()) / 2f - Math.max(
-                        (mArrowWidth * mArrowScale) / 2f, mStrokeWidth / 2f);
-            }
+            final float arcRadius = getArcRadius(bounds);
             arcBounds.set(bounds.centerX() - arcRadius,
                     bounds.centerY() - arcRadius,
                     bounds.centerX() + arcRadius,
                     bounds.centerY() + arcRadius);
 
-            final float startAngle = (mStartTrim + mRotation) * 360;
-            final float endAngle = (mEndTrim + mRotation) * 360;
-            float sweepAngle = endAngle - startAngle;
+            final float startAngle = mState.getStartAngle();
+            final float sweepAngle = mState.getSweepAngle();
 
-            mPaint.setColor(mCurrentColor);
-            mPaint.setAlpha(mAlpha);
+            mPaint.setColor(getPaintColor());
 
             // Draw the background first
             float inset = mStrokeWidth / 2f; // Calculate inset to draw inside the arc
@@ -738,39 +1111,105 @@ class CircularProgressDrawable extends Drawable implements Animatable {
                     mCirclePaint);
             arcBounds.inset(-inset, -inset); // Revert the inset
 
+            if (mUseAtlas && SpinnerAtlas.covers(sweepAngle)
+                    && drawFromAtlas(c, arcBounds, startAngle, sweepAngle)) {
+                return;
+            }
+
             c.drawArc(arcBounds, startAngle, sweepAngle, false, mPaint);
 
-            drawTriangle(c, startAngle, sweepAngle, arcBounds);
+            drawTriangle(c, arcBounds);
+        }
+
+        /**
+         * Draws the arc and the arrow as one frame of the sprite atlas, rotated to the start
+         * angle and tinted with the current color.
+         *
+         * @return {@code false} if the atlas would be too large for this geometry and nothing was
+         *         drawn
+         */
+        boolean drawFromAtlas(Canvas c, RectF arcBounds, float startAngle, float sweepAngle) {
+            final float arcRadius = arcBounds.width() / 2f;
+            // Quantized like the arrow path, so a scale animation reuses a bounded set of atlases.
+            final float arrowScale = ArrowPathCache.quantizeScale(mArrowScale);
+            final float arrowWidth = mShowArrow ? mArrowWidth * arrowScale : 0;
+            final float arrowHeight = mShowArrow ? mArrowHeight * arrowScale : 0;
+            SpinnerAtlas atlas = mAtlas;
+            if (mAtlasStale || arcRadius != mAtlasArcRadius || arrowWidth != mAtlasArrowWidth
+                    || arrowHeight != mAtlasArrowHeight) {
+                atlas = SpinnerAtlas.obtain(arcRadius, mStrokeWidth, mPaint.getStrokeCap(),
+                        arrowWidth, arrowHeight);
+                mAtlas = atlas;
+                mAtlasStale = false;
+                mAtlasArcRadius = arcRadius;
+                mAtlasArrowWidth = arrowWidth;
+                mAtlasArrowHeight = arrowHeight;
+            }
+            if (atlas == null) {
+                return false;
+            }
+            mAtlasPaint.setColor(getPaintColor());
+            final float centerX = arcBounds.centerX();
+            final float centerY = arcBounds.centerY();
+            c.save();
+            c.rotate(startAngle, centerX, centerY);
+            atlas.draw(c, sweepAngle, centerX, centerY, mAtlasPaint);
+            c.restore();
+            return true;
         }
 
-        void drawTriangle(Canvas c, float startAngle, float sweepAngle, RectF bounds) {
+        /**
+         * Returns the current color with its alpha replaced by the ring alpha, the same as
+         * {@link Paint#setAlpha(int)} after {@link Paint#setColor(int)} but without unpacking
+         * the color once more on every frame.
+         */
+        int getPaintColor() {
+            return (mState.mCurrentColor & 0x00FFFFFF) | (mAlpha << 24);
+        }
+
+        float getArcRadius(Rect bounds) {
+            if (mRingCenterRadius <= 0) {
+                // If center radius is not set, fill the bounds
+                return Math.min(bounds.width(), bounds.height()) / 2f - Math.max(
+                        (mArrowWidth * mArrowScale) / 2f, mStrokeWidth / 2f);
+            }
+            return mRingCenterRadius + mStrokeWidth / 2f;
+        }
+
+        /**
+         * Computes the square that contains the ring, the background circle and the arrow at any
+         * rotation.
+         */
+        void getRingBounds(Rect bounds, Rect out) {
+            if (bounds.isEmpty()) {
+                out.setEmpty();
+                return;
+            }
+            final float arrowWidth = mShowArrow ? mArrowWidth * mArrowScale : 0;
+            final float arrowHeight = mShowArrow ? mArrowHeight * mArrowScale : 0;
+            final double extentX = getArcRadius(bounds) + Math.max(mStrokeWidth, arrowWidth) / 2;
+            final double extentY = mStrokeWidth / 2 + arrowHeight;
+            // One more pixel for antialiasing and for the rotation pivot, which is not snapped
+            // to whole pixels like the center of the ring.
+            final int extent = (int) Math.ceil(Math.hypot(extentX, extentY)) + 1;
+            final int centerX = bounds.centerX();
+            final int centerY = bounds.centerY();
+            out.set(centerX - extent, centerY - extent, centerX + extent, centerY + extent);
+        }
+
+        void drawTriangle(Canvas c, RectF bounds) {
             if (mShowArrow) {
-                if (mArrow == null) {
-                    mArrow = new android.graphics.Path();
-                    mArrow.setFillType(android.graphics.Path.FillType.EVEN_ODD);
-                } else {
-                    mArrow.reset();
-                }
+                final float scale = ArrowPathCache.quantizeScale(mArrowScale);
                 float centerRadius = Math.min(bounds.width(), bounds.height()) / 2f;
-                float inset = mArrowWidth * mArrowScale / 2f;
-                // Update the path each time. This works around an issue in SKIA
-                // where concatenating a rotation matrix to a scale matrix
-                // ignored a starting negative rotation. This appears to have
-                // been fixed as of API 21.
-                mArrow.moveTo(0, 0);
-                mArrow.lineTo(mArrowWidth * mArrowScale, 0);
-                mArrow.lineTo((mArrowWidth * mArrowScale / 2), (mArrowHeight
-                        * mArrowScale));
-                mArrow.offset(centerRadius + bounds.centerX() - inset,
-                        bounds.centerY() + mStrokeWidth / 2f);
-                mArrow.close();
-                // draw a triangle
-                mArrowPaint.setColor(mCurrentColor);
-                mArrowPaint.setAlpha(mAlpha);
+                float inset = mArrowWidth * scale / 2f;
+                // draw a triangle, translated from the cached path to the end of the arc
+                mArrowPaint.setColor(getPaintColor());
                 c.save();
-                c.rotate(startAngle + sweepAngle, bounds.centerX(),
-                        bounds.centerY());
-                c.drawPath(mArrow, mArrowPaint);
+                c.rotate(SpinnerGeometry.getArrowRotation(SpinnerGeometry.STYLE_CIRCULAR, mState),
+                        bounds.centerX(), bounds.centerY());
+                c.translate(centerRadius + bounds.centerX() - inset,
+                        bounds.centerY() + mStrokeWidth / 2f);
+                c.drawPath(mArrowPaths.get(scale), mArrowPaint);
                 c.restore();
             }
         }
@@ -781,24 +1220,12 @@ class CircularProgressDrawable extends Drawable implements Animatable {
          * @param colors array of ARGB colors. Must be non-{@code null}.
          */
         void setColors(@NonNull int[] colors) {
-            mColors = colors;
-            // if colors are reset, make sure to reset the color index as well
-            setColorIndex(0);
+            // if colors are reset, the color index is reset as well
+            mState.setColors(colors);
         }
 
         int[] getColors() {
-            return mColors;
-        }
-
-        /**
-         * Sets the absolute color of the progress spinner. This is should only
-         * be used when animating between current and next color when the
-         * spinner is rotating.
-         *
-         * @param color an ARGB color
-         */
-        void setColor(int color) {
-            mCurrentColor = color;
+            return mState.mColors;
         }
 
         /**
@@ -817,31 +1244,12 @@ class CircularProgressDrawable extends Drawable implements Animatable {
          *              the progress spinner.
          */
         void setColorIndex(int index) {
-            mColorIndex = index;
-            mCurrentColor = mColors[mColorIndex];
-        }
-
-        /**
-         * @return int describing the next color the progress spinner should use when drawing.
-         */
-        int getNextColor() {
-            return mColors[getNextColorIndex()];
-        }
-
-        int getNextColorIndex() {
-            return (mColorIndex + 1) % (mColors.length);
-        }
-
-        /**
-         * Proceed to the next available ring color. This will automatically
-         * wrap back to the beginning of colors.
-         */
-        void goToNextColor() {
-            setColorIndex(getNextColorIndex());
+            mState.setColorIndex(index);
         }
 
         void setColorFilter(ColorFilter filter) {
             mPaint.setColorFilter(filter);
+            mAtlasPaint.setColorFilter(filter);
         }
 
         /**
@@ -864,6 +1272,8 @@ class CircularProgressDrawable extends Drawable implements Animatable {
         void setStrokeWidth(float strokeWidth) {
             mStrokeWidth = strokeWidth;
             mPaint.setStrokeWidth(strokeWidth);
+            mAtlasStale = true;
+            mAtlas = null;
         }
 
         float getStrokeWidth() {
@@ -871,39 +1281,27 @@ class CircularProgressDrawable extends Drawable implements Animatable {
         }
 
         void setStartTrim(float startTrim) {
-            mStartTrim = startTrim;
+            mState.mStartTrim = startTrim;
         }
 
         float getStartTrim() {
-            return mStartTrim;
-        }
-
-        float getStartingStartTrim() {
-            return mStartingStartTrim;
-        }
-
-        float getStartingEndTrim() {
-            return mStartingEndTrim;
-        }
-
-        int getStartingColor() {
-            return mColors[mColorIndex];
+            return mState.mStartTrim;
         }
 
         void setEndTrim(float endTrim) {
-            mEndTrim = endTrim;
+            mState.mEndTrim = endTrim;
         }
 
         float getEndTrim() {
-            return mEndTrim;
+            return mState.mEndTrim;
         }
 
         void setRotation(float rotation) {
-            mRotation = rotation;
+            mState.mRotation = rotation;
         }
 
         float getRotation() {
-            return mRotation;
+            return mState.mRotation;
         }
 
         /**
@@ -943,34 +1341,17 @@ class CircularProgressDrawable extends Drawable implements Animatable {
             return mArrowScale;
         }
 
-        /**
-         * @return The amount the progress spinner is currently rotated, between [0..1].
-         */
-        float getStartingRotation() {
-            return mStartingRotation;
-        }
-
-        /**
-         * If the start / end trim are offset to begin with, store them so that animation starts
-         * from that offset.
-         */
-        void storeOriginals() {
-            mStartingStartTrim = mStartTrim;
-            mStartingEndTrim = mEndTrim;
-            mStartingRotation = mRotation;
+        void setUseAtlas(boolean useAtlas) {
+            mUseAtlas = useAtlas;
+            if (!useAtlas) {
+                // Let the cache decide whether the frames stay around.
+                mAtlasStale = true;
+                mAtlas = null;
+            }
         }
 
-        /**
-         * Reset the progress spinner to default rotation, start and end angles.
-         */
-        void resetOriginals() {
-            mStartingStartTrim = 0;
-            mStartingEndTrim = 0;
-            mStartingRotation = 0;
-            setStartTrim(0);
-            setEndTrim(0);
-            setRotation(0);
+        boolean getUseAtlas() {
+            return mUseAtlas;
         }
     }
 }
-
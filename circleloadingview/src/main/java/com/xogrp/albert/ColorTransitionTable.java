@@ -0,0 +1,130 @@
+package com.xogrp.albert;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed transitions between consecutive colors of a color scheme.
+ *
+ * <p>For each color and the one following it, {@link #STEPS} + 1 blended colors are computed when
+ * the scheme is set, so the color of a frame is a single array lookup. Tables are shared by all
+ * drawables that use the same scheme. Blending is either a plain per-channel interpolation, the
+ * same as {@link SpinnerGeometry#evaluateColorChange(float, int, int)}, or a perceptual one in
+ * the OKLab color space, which avoids the muddy midpoints between saturated colors. Both cost the
+ * same per frame.
+ *
+ * <p>Like {@link SpinnerGeometry}, this class has no android dependency.
+ */
+final class ColorTransitionTable {
+
+    /** Number of blending steps between two colors. */
+    static final int STEPS = 64;
+
+    /** Number of distinct schemes kept around for sharing. */
+    private static final int MAX_CACHED_TABLES = 16;
+
+    private static final Map<String, ColorTransitionTable> sCache =
+            new LinkedHashMap<String, ColorTransitionTable>(MAX_CACHED_TABLES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, ColorTransitionTable> eldest) {
+                    return size() > MAX_CACHED_TABLES;
+                }
+            };
+
+    /** Blended colors, {@link #STEPS} + 1 entries per pair of consecutive colors. */
+    private final int[] mTable;
+
+    /**
+     * Returns the shared table for a color scheme, computing it on first use.
+     *
+     * @param colors colors of the scheme; the last one transitions back to the first
+     * @param perceptual {@code true} to blend in OKLab, {@code false} to blend each channel
+     */
+    static synchronized ColorTransitionTable obtain(int[] colors, boolean perceptual) {
+        final String key = Arrays.toString(colors) + perceptual;
+        ColorTransitionTable table = sCache.get(key);
+        if (table == null) {
+            table = new ColorTransitionTable(colors, perceptual);
+            sCache.put(key, table);
+        }
+        return table;
+    }
+
+    private ColorTransitionTable(int[] colors, boolean perceptual) {
+        final int count = colors.length;
+        mTable = new int[count * (STEPS + 1)];
+        for (int i = 0; i < count; i++) {
+            final int start = colors[i];
+            final int end = colors[(i + 1) % count];
+            for (int step = 0; step <= STEPS; step++) {
+                final float fraction = step / (float) STEPS;
+                mTable[i * (STEPS + 1) + step] = perceptual
+                        ? blendOklab(fraction, start, end)
+                        : SpinnerGeometry.evaluateColorChange(fraction, start, end);
+            }
+        }
+    }
+
+    /**
+     * Returns the color at a point of the transition from a color to the next one.
+     *
+     * @param index index of the starting color in the scheme
+     * @param fraction point of the transition from [0..1]
+     */
+    int getColor(int index, float fraction) {
+        final int step = Math.max(0, Math.min(STEPS, (int) (fraction * STEPS + .5f)));
+        return mTable[index * (STEPS + 1) + step];
+    }
+
+    private static int blendOklab(float fraction, int startValue, int endValue) {
+        final double[] start = toOklab(startValue);
+        final double[] end = toOklab(endValue);
+        final double lightness = start[0] + fraction * (end[0] - start[0]);
+        final double a = start[1] + fraction * (end[1] - start[1]);
+        final double b = start[2] + fraction * (end[2] - start[2]);
+
+        final double l = cube(lightness + 0.3963377774 * a + 0.2158037573 * b);
+        final double m = cube(lightness - 0.1055613458 * a - 0.0638541728 * b);
+        final double s = cube(lightness - 0.0894841775 * a - 1.2914855480 * b);
+
+        final int startA = (startValue >> 24) & 0xff;
+        final int endA = (endValue >> 24) & 0xff;
+        return (startA + (int) (fraction * (endA - startA))) << 24
+                | toSrgb(4.0767416621 * l - 3.3077115913 * m + 0.2309699292 * s) << 16
+                | toSrgb(-1.2684380046 * l + 2.6097574011 * m - 0.3413193965 * s) << 8
+                | toSrgb(-0.0041960863 * l - 0.7034186147 * m + 1.7076147010 * s);
+    }
+
+    private static double[] toOklab(int color) {
+        final double r = toLinear((color >> 16) & 0xff);
+        final double g = toLinear((color >> 8) & 0xff);
+        final double b = toLinear(color & 0xff);
+
+        final double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+        final double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+        final double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+
+        return new double[] {
+                0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s,
+                1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s,
+                0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s
+        };
+    }
+
+    private static double toLinear(int channel) {
+        final double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static int toSrgb(double linear) {
+        final double c = linear <= 0.0031308 ? 12.92 * linear
+                : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+        return (int) Math.round(Math.max(0, Math.min(1, c)) * 255);
+    }
+
+    private static double cube(double value) {
+        return value * value * value;
+    }
+}
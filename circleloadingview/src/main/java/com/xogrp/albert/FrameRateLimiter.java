@@ -0,0 +1,96 @@
+package com.xogrp.albert;
+
+/**
+ * Caps how often a spinner drawable redraws by skipping vsyncs.
+ *
+ * <p>Skipped frames are not computed at all. Since the drawables derive the animation from the
+ * frame time, the timing of a cycle is the same at every rate; only fewer of its frames are drawn.
+ *
+ * <p>A drawable either has its own rate or follows the process-wide default, which matches the
+ * display unless changed with {@link #setDefaultFrameRate(int)}.
+ */
+final class FrameRateLimiter {
+
+    /** Follow the process-wide default set with {@link #setDefaultFrameRate(int)}. */
+    static final int FRAME_RATE_DEFAULT = -1;
+    /** Draw on every vsync. */
+    static final int FRAME_RATE_DISPLAY = 0;
+
+    /**
+     * Frames arriving this much before their slot still count, so vsync jitter and the
+     * millisecond rounding of frame times don't skip a frame that was meant to be drawn.
+     */
+    private static final double SLOP_MILLIS = 2;
+
+    private static int sDefaultFrameRate = FRAME_RATE_DISPLAY;
+
+    private int mFrameRate = FRAME_RATE_DEFAULT;
+    private double mNextFrameTime = Double.NaN;
+
+    /**
+     * Sets the rate used by limiters that don't have their own.
+     *
+     * @param frameRate frames per second, or {@link #FRAME_RATE_DISPLAY}
+     */
+    static void setDefaultFrameRate(int frameRate) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + frameRate);
+        }
+        sDefaultFrameRate = frameRate;
+    }
+
+    static int getDefaultFrameRate() {
+        return sDefaultFrameRate;
+    }
+
+    /**
+     * @param frameRate frames per second, {@link #FRAME_RATE_DISPLAY} or
+     *                  {@link #FRAME_RATE_DEFAULT}
+     */
+    void setFrameRate(int frameRate) {
+        if (frameRate < FRAME_RATE_DEFAULT) {
+            throw new IllegalArgumentException("Invalid frame rate: " + frameRate);
+        }
+        mFrameRate = frameRate;
+        reset();
+    }
+
+    int getFrameRate() {
+        return mFrameRate;
+    }
+
+    /**
+     * Returns the frame rate in effect, resolving {@link #FRAME_RATE_DEFAULT}.
+     */
+    int getEffectiveFrameRate() {
+        return mFrameRate == FRAME_RATE_DEFAULT ? sDefaultFrameRate : mFrameRate;
+    }
+
+    /**
+     * Forgets the last drawn frame, so the next frame is drawn.
+     */
+    void reset() {
+        mNextFrameTime = Double.NaN;
+    }
+
+    /**
+     * Returns {@code true} if the frame should be computed and drawn, {@code false} to skip it.
+     */
+    boolean shouldDraw(long frameTimeMillis) {
+        final int frameRate = getEffectiveFrameRate();
+        if (frameRate == FRAME_RATE_DISPLAY) {
+            return true;
+        }
+        final double interval = 1000.0 / frameRate;
+        if (!Double.isNaN(mNextFrameTime) && frameTimeMillis < mNextFrameTime - SLOP_MILLIS) {
+            return false;
+        }
+        // Keep the slots on a regular grid, but don't try to catch up after a long stall.
+        if (Double.isNaN(mNextFrameTime) || frameTimeMillis >= mNextFrameTime + interval) {
+            mNextFrameTime = frameTimeMillis + interval;
+        } else {
+            mNextFrameTime += interval;
+        }
+        return true;
+    }
+}
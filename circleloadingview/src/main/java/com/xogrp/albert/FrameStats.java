@@ -0,0 +1,229 @@
+package com.xogrp.albert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Opt-in frame statistics of one spinner: how long drawing and the animation update take, the
+ * interval between frames and the vsyncs missed.
+ *
+ * <p>Everything is kept in fixed-size histograms allocated up front, so recording does not
+ * allocate. Read the data with {@link #snapshot(FrameStats)} into an instance owned by the
+ * caller, or get called back every few frames through a {@link Listener}. Main thread only.
+ */
+public final class FrameStats {
+
+    /**
+     * Upper bounds in nanoseconds of the draw and update time buckets. A last bucket counts
+     * everything above the largest bound.
+     */
+    private static final long[] DURATION_BOUNDS_NANOS = {
+            50000, 100000, 250000, 500000, 1000000, 2000000, 4000000, 8000000, 16000000
+    };
+
+    /**
+     * Upper bounds in milliseconds of the frame interval buckets. A last bucket counts
+     * everything above the largest bound.
+     */
+    private static final long[] INTERVAL_BOUNDS_MILLIS = {
+            9, 13, 18, 26, 35, 51, 101
+    };
+
+    /** Number of buckets of {@link #getDrawTimeHistogram(int[])} and the update histogram. */
+    public static final int DURATION_BUCKET_COUNT = DURATION_BOUNDS_NANOS.length + 1;
+    /** Number of buckets of {@link #getFrameIntervalHistogram(int[])}. */
+    public static final int INTERVAL_BUCKET_COUNT = INTERVAL_BOUNDS_MILLIS.length + 1;
+
+    /** Receives the statistics of a spinner every few frames. */
+    public interface Listener {
+        /**
+         * @param stats the live statistics; copy them with {@link #snapshot(FrameStats)} to
+         *              keep them beyond this call
+         */
+        void onFrameStats(@NonNull FrameStats stats);
+    }
+
+    private final int[] mDrawTimes = new int[DURATION_BUCKET_COUNT];
+    private final int[] mUpdateTimes = new int[DURATION_BUCKET_COUNT];
+    private final int[] mIntervals = new int[INTERVAL_BUCKET_COUNT];
+    private long mFrameCount;
+    private long mDroppedFrameCount;
+    private long mTotalDrawTimeNanos;
+    private long mTotalUpdateTimeNanos;
+    private long mLastFrameTime = -1;
+    private float mVsyncIntervalMillis = 1000f / 60;
+
+    private Listener mListener;
+    private int mReportInterval;
+    private int mFramesSinceReport;
+
+    /**
+     * Returns the upper bound in nanoseconds of a draw or update time bucket, or
+     * {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public static long getDurationBucketBound(int bucket) {
+        return bucket < DURATION_BOUNDS_NANOS.length ? DURATION_BOUNDS_NANOS[bucket]
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the upper bound in milliseconds of a frame interval bucket, or
+     * {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public static long getIntervalBucketBound(int bucket) {
+        return bucket < INTERVAL_BOUNDS_MILLIS.length ? INTERVAL_BOUNDS_MILLIS[bucket]
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets a listener called after every {@code reportInterval} recorded frames.
+     *
+     * @param listener the listener, or {@code null} to remove it
+     * @param reportInterval frames between two calls, at least 1
+     */
+    public void setListener(@Nullable Listener listener, int reportInterval) {
+        if (reportInterval < 1) {
+            throw new IllegalArgumentException("Report interval must be positive: "
+                    + reportInterval);
+        }
+        mListener = listener;
+        mReportInterval = reportInterval;
+        mFramesSinceReport = 0;
+    }
+
+    /**
+     * Sets the refresh rate of the display, which sets the expected frame interval of spinners
+     * without a frame rate cap. Defaults to 60.
+     */
+    public void setDisplayRefreshRate(float refreshRate) {
+        mVsyncIntervalMillis = 1000f / refreshRate;
+    }
+
+    float getVsyncIntervalMillis() {
+        return mVsyncIntervalMillis;
+    }
+
+    /** Returns the number of animation frames recorded. */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /** Returns the number of vsyncs missed between recorded frames. */
+    public long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    /** Returns the total time spent in draw(), in nanoseconds. */
+    public long getTotalDrawTimeNanos() {
+        return mTotalDrawTimeNanos;
+    }
+
+    /** Returns the total time spent updating the animation state, in nanoseconds. */
+    public long getTotalUpdateTimeNanos() {
+        return mTotalUpdateTimeNanos;
+    }
+
+    /**
+     * Copies the draw time histogram into {@code out}, which must hold at least
+     * {@link #DURATION_BUCKET_COUNT} entries.
+     */
+    public void getDrawTimeHistogram(@NonNull int[] out) {
+        System.arraycopy(mDrawTimes, 0, out, 0, DURATION_BUCKET_COUNT);
+    }
+
+    /**
+     * Copies the animation update time histogram into {@code out}, which must hold at least
+     * {@link #DURATION_BUCKET_COUNT} entries.
+     */
+    public void getUpdateTimeHistogram(@NonNull int[] out) {
+        System.arraycopy(mUpdateTimes, 0, out, 0, DURATION_BUCKET_COUNT);
+    }
+
+    /**
+     * Copies the frame interval histogram into {@code out}, which must hold at least
+     * {@link #INTERVAL_BUCKET_COUNT} entries.
+     */
+    public void getFrameIntervalHistogram(@NonNull int[] out) {
+        System.arraycopy(mIntervals, 0, out, 0, INTERVAL_BUCKET_COUNT);
+    }
+
+    /**
+     * Copies the recorded data, but not the listener, into {@code out}.
+     */
+    public void snapshot(@NonNull FrameStats out) {
+        System.arraycopy(mDrawTimes, 0, out.mDrawTimes, 0, DURATION_BUCKET_COUNT);
+        System.arraycopy(mUpdateTimes, 0, out.mUpdateTimes, 0, DURATION_BUCKET_COUNT);
+        System.arraycopy(mIntervals, 0, out.mIntervals, 0, INTERVAL_BUCKET_COUNT);
+        out.mFrameCount = mFrameCount;
+        out.mDroppedFrameCount = mDroppedFrameCount;
+        out.mTotalDrawTimeNanos = mTotalDrawTimeNanos;
+        out.mTotalUpdateTimeNanos = mTotalUpdateTimeNanos;
+    }
+
+    /**
+     * Clears the recorded data.
+     */
+    public void reset() {
+        for (int i = 0; i < DURATION_BUCKET_COUNT; i++) {
+            mDrawTimes[i] = 0;
+            mUpdateTimes[i] = 0;
+        }
+        for (int i = 0; i < INTERVAL_BUCKET_COUNT; i++) {
+            mIntervals[i] = 0;
+        }
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+        mTotalDrawTimeNanos = 0;
+        mTotalUpdateTimeNanos = 0;
+        mLastFrameTime = -1;
+        mFramesSinceReport = 0;
+    }
+
+    /**
+     * Breaks the interval chain, so the gap after a start or resume isn't counted as dropped
+     * frames.
+     */
+    void restartIntervals() {
+        mLastFrameTime = -1;
+    }
+
+    void recordDraw(long durationNanos) {
+        mTotalDrawTimeNanos += durationNanos;
+        mDrawTimes[bucketOf(DURATION_BOUNDS_NANOS, durationNanos)]++;
+    }
+
+    /**
+     * Records an animation frame.
+     *
+     * @param frameTimeMillis frame time of the update
+     * @param durationNanos time spent computing the frame
+     * @param expectedIntervalMillis interval at which frames are expected
+     */
+    void recordFrame(long frameTimeMillis, long durationNanos, float expectedIntervalMillis) {
+        mFrameCount++;
+        mTotalUpdateTimeNanos += durationNanos;
+        mUpdateTimes[bucketOf(DURATION_BOUNDS_NANOS, durationNanos)]++;
+        if (mLastFrameTime >= 0) {
+            final long interval = frameTimeMillis - mLastFrameTime;
+            mIntervals[bucketOf(INTERVAL_BOUNDS_MILLIS, interval)]++;
+            final int missed = Math.round(interval / expectedIntervalMillis) - 1;
+            if (missed > 0) {
+                mDroppedFrameCount += missed;
+            }
+        }
+        mLastFrameTime = frameTimeMillis;
+        if (mListener != null && ++mFramesSinceReport >= mReportInterval) {
+            mFramesSinceReport = 0;
+            mListener.onFrameStats(this);
+        }
+    }
+
+    private static int bucketOf(long[] bounds, long value) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (value < bounds[i]) {
+                return i;
+            }
+        }
+        return bounds.length;
+    }
+}
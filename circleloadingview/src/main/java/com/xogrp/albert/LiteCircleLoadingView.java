@@ -0,0 +1,552 @@
+package com.xogrp.albert;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+import androidx.annotation.ColorInt;
+import androidx.annotation.ColorRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.core.view.ViewCompat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lighter {@link CircleLoadingView} that extends {@link View} directly.
+ *
+ * <p>It accepts the same XML attributes and shows the same spinner on the same disc, but owns its
+ * drawable instead of going through ImageView: there is no image matrix or scale type, no
+ * AppCompat background and tint helpers, and changing the size doesn't reset an image. The view
+ * measures to the intrinsic size of the drawable plus the shadow inset and padding, and draws the
+ * disc and the drawable itself.
+ *
+ * <p>Like {@link CircleLoadingView}, construction only parses the attributes and may run on a
+ * background thread; the drawable is created the first time the spinner is shown.
+ *
+ * <p>The animation pauses while the view or its window is hidden; unlike
+ * {@link CircleLoadingView} it doesn't track being scrolled out of sight, which would cost a
+ * listener on the view tree.
+ */
+public class LiteCircleLoadingView extends View {
+
+    private static final boolean UP_LOLLIPOP =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+
+    /** Elevation in dp of the disc from Lollipop on. */
+    private static final float SHADOW_ELEVATION = 4;
+    /** Color of the key shadow cast by the disc before Lollipop. */
+    private static final int KEY_SHADOW_COLOR = 0x1E000000;
+
+    /** Settings of the spinner, applied to the drawable once it is created. */
+    private final SpinnerSpec mSpec;
+    /** Creator of the drawable, {@code null} until the spinner is first shown. */
+    private ProgressDrawableCreator mCreator;
+    private final Paint mDiscPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect mDiscBounds = new Rect();
+    private final float mDensity;
+    /** Elevation, or the width of the pre-Lollipop shadow, which follows the diameter. */
+    private int mShadowInset;
+    /** Pre-Lollipop disc and shadow, {@code null} until drawn or once stale. */
+    private Bitmap mShadowBitmap;
+
+    private Drawable mDrawable;
+    private int mDrawableWidth;
+    private int mDrawableHeight;
+
+    private boolean mAttached;
+    /** Whether the animation was started for the current attachment. */
+    private boolean mStarted;
+    private boolean mPaused;
+    /** Uptime at which a detach paused the animation, or -1 if it isn't waiting to resume. */
+    private long mDetachTime = -1;
+
+    /** Latest progress published by {@link #setProgress(float)}, as float bits. */
+    private final AtomicInteger mPublishedProgress = new AtomicInteger();
+    /** Set while {@link #mApplyProgress} is posted, so updates coalesce into one per frame. */
+    private final AtomicBoolean mProgressPosted = new AtomicBoolean();
+    private final Runnable mApplyProgress = new Runnable() {
+        @Override
+        public void run() {
+            // Cleared before reading, so a value published meanwhile posts again.
+            mProgressPosted.set(false);
+            applyProgress(Float.intBitsToFloat(mPublishedProgress.get()));
+        }
+    };
+
+    public LiteCircleLoadingView(Context context) {
+        this(context, null);
+    }
+
+    public LiteCircleLoadingView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public LiteCircleLoadingView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mDensity = context.getResources().getDisplayMetrics().density;
+        mSpec = SpinnerSpec.parse(context, attrs, defStyleAttr);
+        mDiscPaint.setColor(mSpec.mBackgroundColor);
+        if (UP_LOLLIPOP) {
+            mShadowInset = (int) (SHADOW_ELEVATION * mDensity);
+            setElevation(mShadowInset);
+            setOutlineProvider(new DiscOutlineProvider());
+        } else {
+            mShadowInset = getShadowMetrics().mShadowInset;
+        }
+        mDrawableWidth = mSpec.getDiameter(mDensity);
+        mDrawableHeight = mDrawableWidth;
+    }
+
+    /**
+     * Returns the metrics the shadow is sized by, those of the current diameter.
+     */
+    private SpinnerMetrics getShadowMetrics() {
+        return SpinnerMetrics.obtain(SpinnerGeometry.STYLE_CIRCULAR, mSpec.getDiameterDp(),
+                mDensity);
+    }
+
+    /**
+     * Sizes the pre-Lollipop shadow to a new diameter. The elevation stays the same.
+     */
+    private void updateShadowInset() {
+        if (!UP_LOLLIPOP) {
+            mShadowInset = getShadowMetrics().mShadowInset;
+            mShadowBitmap = null;
+        }
+    }
+
+    /**
+     * Returns the creator, creating the drawable from the spec on first use.
+     */
+    private ProgressDrawableCreator getCreator() {
+        if (mCreator == null) {
+            mCreator = mSpec.createCreator(getContext());
+            updateFrameStatsRefreshRate();
+            setDrawable(mCreator.getDrawable());
+        }
+        return mCreator;
+    }
+
+    private void setDrawable(Drawable drawable) {
+        if (mDrawable != drawable) {
+            if (mDrawable != null) {
+                mDrawable.setCallback(null);
+            }
+            mDrawable = drawable;
+            drawable.setCallback(this);
+        }
+        if (drawable.getIntrinsicWidth() != mDrawableWidth
+                || drawable.getIntrinsicHeight() != mDrawableHeight) {
+            mDrawableWidth = drawable.getIntrinsicWidth();
+            mDrawableHeight = drawable.getIntrinsicHeight();
+            requestLayout();
+        }
+        updateBounds();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = Math.max(mDrawableWidth, 0) + 2 * mShadowInset
+                + getPaddingLeft() + getPaddingRight();
+        final int height = Math.max(mDrawableHeight, 0) + 2 * mShadowInset
+                + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSizeAndState(width, widthMeasureSpec, 0),
+                resolveSizeAndState(height, heightMeasureSpec, 0));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateBounds();
+    }
+
+    /**
+     * Centers the disc in the content area, inset for its shadow, and the drawable on the disc.
+     */
+    private void updateBounds() {
+        final int left = getPaddingLeft();
+        final int top = getPaddingTop();
+        final int width = getWidth() - left - getPaddingRight();
+        final int height = getHeight() - top - getPaddingBottom();
+        final int centerX = left + width / 2;
+        final int centerY = top + height / 2;
+        final int radius = Math.max(0, Math.min(width, height) / 2 - mShadowInset);
+        mDiscBounds.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        if (mDrawable != null) {
+            if (mDrawableWidth > 0 && mDrawableHeight > 0) {
+                final int drawableLeft = centerX - mDrawableWidth / 2;
+                final int drawableTop = centerY - mDrawableHeight / 2;
+                mDrawable.setBounds(drawableLeft, drawableTop, drawableLeft + mDrawableWidth,
+                        drawableTop + mDrawableHeight);
+            } else {
+                mDrawable.setBounds(mDiscBounds);
+            }
+        }
+        mShadowBitmap = null;
+        if (UP_LOLLIPOP) {
+            invalidateOutline();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final Rect disc = mDiscBounds;
+        if (!disc.isEmpty()) {
+            if (UP_LOLLIPOP) {
+                canvas.drawCircle(disc.exactCenterX(), disc.exactCenterY(), disc.width() / 2f,
+                        mDiscPaint);
+            } else {
+                if (mShadowBitmap == null) {
+                    mShadowBitmap = ShadowBitmapCache.obtain(disc.width(), mShadowInset,
+                            KEY_SHADOW_COLOR, mDiscPaint.getColor());
+                }
+                canvas.drawBitmap(mShadowBitmap,
+                        disc.exactCenterX() - mShadowBitmap.getWidth() / 2f,
+                        disc.exactCenterY() - mShadowBitmap.getHeight() / 2f, null);
+            }
+        }
+        if (mDrawable != null) {
+            mDrawable.draw(canvas);
+        }
+    }
+
+    @Override
+    protected boolean verifyDrawable(@NonNull Drawable who) {
+        return who == mDrawable || super.verifyDrawable(who);
+    }
+
+    /**
+     * Invalidates only the dirty bounds of the drawable, which the spinner drawables limit to
+     * the ring. Unlike {@link View#invalidateDrawable(Drawable)} this doesn't rebuild the
+     * outline on every frame.
+     */
+    @Override
+    public void invalidateDrawable(@NonNull Drawable dr) {
+        if (dr != mDrawable) {
+            super.invalidateDrawable(dr);
+            return;
+        }
+        if (dr.getIntrinsicWidth() != mDrawableWidth
+                || dr.getIntrinsicHeight() != mDrawableHeight) {
+            setDrawable(dr);
+            return;
+        }
+        final Rect dirty = dr.getDirtyBounds();
+        final int scrollX = getScrollX();
+        final int scrollY = getScrollY();
+        invalidate(dirty.left + scrollX, dirty.top + scrollY, dirty.right + scrollX,
+                dirty.bottom + scrollY);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mProgressPosted.get()) {
+            // Before API 24, a runnable posted from another thread to a detached view is lost.
+            mApplyProgress.run();
+        }
+        updateVisibleAnimation();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mStarted) {
+            mCreator.pause();
+            mDetachTime = SystemClock.uptimeMillis();
+        }
+        mAttached = false;
+        mStarted = false;
+        mPaused = false;
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateVisibleAnimation();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateVisibleAnimation();
+    }
+
+    private void updateVisibleAnimation() {
+        if (!mAttached) {
+            // Also covers calls made while the super constructor runs.
+            return;
+        }
+        final boolean visible = getWindowVisibility() == VISIBLE && isShown();
+        if (!mStarted) {
+            if (visible) {
+                mStarted = true;
+                mPaused = false;
+                startAnimation();
+            }
+            return;
+        }
+        if (visible == !mPaused) {
+            return;
+        }
+        mPaused = !visible;
+        if (visible) {
+            mCreator.resume();
+        } else {
+            mCreator.pause();
+        }
+    }
+
+    /**
+     * Continues the animation where a recent detach left it, or starts a new one.
+     */
+    private void startAnimation() {
+        final ProgressDrawableCreator creator = getCreator();
+        final long detachedMillis = SystemClock.uptimeMillis() - mDetachTime;
+        if (mDetachTime >= 0 && detachedMillis <= CircleLoadingView.PHASE_RETENTION_MILLIS) {
+            creator.resume();
+        } else {
+            if (mDetachTime >= 0) {
+                creator.stop();
+            }
+            creator.start();
+        }
+        mDetachTime = -1;
+    }
+
+    /**
+     * Sets the color of the disc behind the spinner.
+     */
+    @Override
+    public void setBackgroundColor(@ColorInt int color) {
+        mDiscPaint.setColor(color);
+        mShadowBitmap = null;
+        invalidate();
+    }
+
+    /**
+     * Set the colors used in the progress animation.
+     *
+     * @param colors colors
+     */
+    public void setColorSchemeColors(int... colors) {
+        mSpec.mColors = colors.clone();
+        if (mCreator != null) {
+            // A scheme of several colors moves the vector engine to its fallback drawable.
+            mCreator.setColorSchemeColors(colors);
+            setDrawable(mCreator.getDrawable());
+        }
+    }
+
+    /**
+     * Set Size
+     * @param size  LARGE or NORMAL
+     */
+    public void setSize(@CircleLoadingView.Size int size) {
+        mSpec.mSize = size;
+        mSpec.mDiameter = 0;
+        updateShadowInset();
+        if (mCreator != null) {
+            mCreator.setSize(size);
+            setDrawable(mCreator.getDrawable());
+        } else {
+            mDrawableWidth = mSpec.getDiameter(mDensity);
+            mDrawableHeight = mDrawableWidth;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Sets any diameter instead of one of the sizes.
+     *
+     * @param diameterDp diameter in dp, from 16 to 96
+     * @see CircleLoadingView#setDiameter(float)
+     */
+    public void setDiameter(float diameterDp) {
+        SpinnerMetrics.checkDiameter(diameterDp);
+        mSpec.mDiameter = diameterDp;
+        updateShadowInset();
+        if (mCreator != null) {
+            mCreator.setDiameter(diameterDp);
+            setDrawable(mCreator.getDrawable());
+        } else {
+            mDrawableWidth = mSpec.getDiameter(mDensity);
+            mDrawableHeight = mDrawableWidth;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Set the background color of the progress spinner disc.
+     *
+     * @param colorRes Resource id of the color.
+     */
+    public void setProgressBackgroundColorSchemeResource(@ColorRes int colorRes) {
+        setProgressBackgroundColorSchemeColor(ContextCompat.getColor(getContext(), colorRes));
+    }
+
+    /**
+     * Set the background color of the progress spinner disc.
+     *
+     * @param color ColorInt
+     */
+    public void setProgressBackgroundColorSchemeColor(@ColorInt int color) {
+        setBackgroundColor(color);
+        mSpec.mProgressBackgroundColor = color;
+        if (mCreator != null) {
+            mCreator.setBackgroundColor(color);
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setSpriteAtlasEnabled(boolean)
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        mSpec.mUseSpriteAtlas = enabled;
+        if (mCreator != null) {
+            mCreator.setSpriteAtlasEnabled(enabled);
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setFrameRate(int)
+     */
+    public void setFrameRate(int frameRate) {
+        mSpec.mFrameRate = frameRate;
+        if (mCreator != null) {
+            mCreator.setFrameRate(frameRate);
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setPerceptualColorBlending(boolean)
+     */
+    public void setPerceptualColorBlending(boolean perceptual) {
+        mSpec.mPerceptualColorBlending = perceptual;
+        if (mCreator != null) {
+            mCreator.setPerceptualColorBlending(perceptual);
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setProgress(float)
+     */
+    public void setProgress(float progress) {
+        mPublishedProgress.set(Float.floatToIntBits(progress));
+        if (mProgressPosted.compareAndSet(false, true)) {
+            ViewCompat.postOnAnimation(this, mApplyProgress);
+        }
+    }
+
+    private void applyProgress(float progress) {
+        mSpec.mProgress = progress;
+        mSpec.mIndeterminate = false;
+        if (mCreator != null) {
+            mCreator.setProgress(progress);
+            setDrawable(mCreator.getDrawable());
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setIndeterminate(boolean)
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (indeterminate) {
+            removeCallbacks(mApplyProgress);
+            mProgressPosted.set(false);
+        }
+        mSpec.mIndeterminate = indeterminate;
+        if (mCreator != null) {
+            mCreator.setIndeterminate(indeterminate);
+            setDrawable(mCreator.getDrawable());
+        }
+    }
+
+    public boolean isIndeterminate() {
+        return mSpec.mIndeterminate;
+    }
+
+    /**
+     * @see CircleLoadingView#setAnimationTime(long)
+     */
+    public void setAnimationTime(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException("Animation time must not be negative: "
+                    + elapsedMillis);
+        }
+        final ProgressDrawableCreator creator = getCreator();
+        creator.setAnimationTime(elapsedMillis);
+        setDrawable(creator.getDrawable());
+    }
+
+    /**
+     * @see CircleLoadingView#renderFrameAt(Canvas, long)
+     */
+    public void renderFrameAt(@NonNull Canvas canvas, long elapsedMillis) {
+        setAnimationTime(elapsedMillis);
+        draw(canvas);
+    }
+
+    /**
+     * @see CircleLoadingView#setTimeSource(TimeSource)
+     */
+    public void setTimeSource(@Nullable TimeSource timeSource) {
+        mSpec.mTimeSource = timeSource;
+        if (mCreator != null) {
+            mCreator.setTimeSource(timeSource);
+            setDrawable(mCreator.getDrawable());
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#setFrameStatsEnabled(boolean)
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        mSpec.mFrameStatsEnabled = enabled;
+        if (mCreator != null) {
+            mCreator.setFrameStatsEnabled(enabled);
+            updateFrameStatsRefreshRate();
+        }
+    }
+
+    private void updateFrameStatsRefreshRate() {
+        final FrameStats stats = mCreator.getFrameStats();
+        if (stats != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && getDisplay() != null) {
+            stats.setDisplayRefreshRate(getDisplay().getRefreshRate());
+        }
+    }
+
+    /**
+     * @see CircleLoadingView#getFrameStats()
+     */
+    @Nullable
+    public FrameStats getFrameStats() {
+        return getCreator().getFrameStats();
+    }
+
+    /**
+     * Casts the elevation shadow from the disc rather than from the whole view.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class DiscOutlineProvider extends ViewOutlineProvider {
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setOval(((LiteCircleLoadingView) view).mDiscBounds);
+        }
+    }
+}
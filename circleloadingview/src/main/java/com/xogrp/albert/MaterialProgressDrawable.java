@@ -23,26 +23,18 @@ import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
-import android.util.DisplayMetrics;
-import android.view.View;
-import android.view.animation.Animation;
-import android.view.animation.Interpolator;
-import android.view.animation.LinearInterpolator;
-import android.view.animation.Transformation;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
-import androidx.interpolator.view.animation.FastOutSlowInInterpolator;
+import androidx.annotation.Nullable;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.ArrayList;
 
 /*
  * Copyright (C) 2014 The Android Open Source Project
@@ -59,11 +51,8 @@ import java.util.ArrayList;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-class MaterialProgressDrawable extends Drawable implements Animatable {
-    private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
-    static final Interpolator MATERIAL_INTERPOLATOR = new FastOutSlowInInterpolator();
-
-    private static final float FULL_ROTATION = 1080.0f;
+class MaterialProgressDrawable extends Drawable implements Animatable,
+        SpinnerTicker.FrameCallback {
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LARGE, DEFAULT})
@@ -74,84 +63,177 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
     // Maps to ProgressBar default style
     static final int DEFAULT = 1;
 
-    // Maps to ProgressBar default style
-    private static final int CIRCLE_DIAMETER = 40;
-    private static final float CENTER_RADIUS = 8.75f; //should add up to 10 when + stroke_width
-    private static final float STROKE_WIDTH = 2.5f;
-
-    // Maps to ProgressBar.Large style
-    private static final int CIRCLE_DIAMETER_LARGE = 56;
-    private static final float CENTER_RADIUS_LARGE = 12.5f;
-    private static final float STROKE_WIDTH_LARGE = 3f;
-
     private static final int[] COLORS = new int[] {
         Color.BLACK
     };
 
-    /**
-     * The value in the linear interpolator for animating the drawable at which
-     * the color transition should start
-     */
-    private static final float COLOR_START_DELAY_OFFSET = 0.75f;
-    private static final float END_TRIM_START_DELAY_OFFSET = 0.5f;
-    private static final float START_TRIM_DURATION_OFFSET = 0.5f;
-
     /** The duration of a single progress spin in milliseconds. */
-    private static final int ANIMATION_DURATION = 1332;
+    private static final int ANIMATION_DURATION = SpinnerGeometry.ANIMATION_DURATION;
 
-    /** The number of points in the progress "star". */
-    private static final float NUM_POINTS = 5f;
-    /** The list of animators operating on this drawable. */
-    private final ArrayList<Animation> mAnimators = new ArrayList<Animation>();
+    /** Marks a start time that is taken from the next frame. */
+    private static final long UNSET_START_TIME = -1;
 
-    /** The indicator ring, used to manage animation state. */
-    private final Ring mRing;
-
-    /** Canvas rotation in degrees. */
-    private float mRotation;
+    /**
+     * Configuration, possibly shared with other drawables. A shared configuration is never
+     * modified; the first setter called on a drawable sharing it gives it a copy of its own.
+     */
+    private ProgressState mProgressState;
 
-    /** Layout info for the arrowhead in dp */
-    private static final int ARROW_WIDTH = 10;
-    private static final int ARROW_HEIGHT = 5;
-    private static final float ARROW_OFFSET_ANGLE = 5;
+    /** Animation state, advanced by {@link SpinnerGeometry}. */
+    private final SpinnerState mState;
 
-    /** Layout info for the arrowhead for the large spinner in dp */
-    private static final int ARROW_WIDTH_LARGE = 12;
-    private static final int ARROW_HEIGHT_LARGE = 6;
-    private static final float MAX_PROGRESS_ARC = .8f;
+    /** The indicator ring, used to draw the animation state. */
+    private final Ring mRing;
 
     private Resources mResources;
-    private View mParent;
-    private Animation mAnimation;
-    float mRotationCount;
+    private boolean mRunning;
+    /** Frame time at which the animation started, moved by pauses and seeks. */
+    private long mStartTime = UNSET_START_TIME;
+    /** Frame time of the last computed frame. */
+    private long mLastFrameTime;
+    /** Time into the animation to continue from once the next frame arrives. */
+    private long mResumePhase;
+    /** Set while the arc visible when the animation started is being closed. */
+    private boolean mClosingArc;
+    /**
+     * Whether the cycles were begun since the arc was last set, so seeking a stopped animation
+     * again closes the same arc instead of the one of the previous seek.
+     */
+    private boolean mCyclesBegun;
+    /** Clock frames are computed from instead of the frame time, or {@code null}. */
+    private TimeSource mTimeSource;
+    private boolean mPaused;
+    /** Whether the arc shows {@link #mProgress} instead of spinning. */
+    private boolean mDeterminate;
+    /** Progress the determinate arc moves toward, from [0..1]. */
+    private float mProgress;
+    /** Progress the determinate arc shows. */
+    private float mShownProgress;
+    /** Set while the spinning arc morphs into the determinate one. */
+    private boolean mMorphing;
+    /** Frame time at which the morph started. */
+    private long mMorphStartTime = UNSET_START_TIME;
+    /** Baked motion of a cycle, or {@code null} to evaluate it on every frame. */
+    private SpinnerKeyframes mKeyframes;
+    private int mKeyframeResolution;
+    /** Skips vsyncs beyond the target frame rate. */
+    private final FrameRateLimiter mFrameRateLimiter = new FrameRateLimiter();
+    /** Opt-in frame statistics, {@code null} unless enabled. */
+    private FrameStats mFrameStats;
+    /** Area covered by the ring and arrow in the last invalidated frame. */
+    private final Rect mRingBounds = new Rect();
+    /** Union of the ring area of the previous and the current frame. */
+    private final Rect mDirtyBounds = new Rect();
+    private final Rect mTempRect = new Rect();
     private double mWidth;
     private double mHeight;
-    boolean mFinishing;
 
-    MaterialProgressDrawable(Context context, View parent) {
-        mParent = parent;
+    MaterialProgressDrawable(Context context) {
         mResources = context.getResources();
+        mProgressState = new ProgressState(mResources);
 
-        mRing = new Ring(mCallback);
-        mRing.setColors(COLORS);
+        mState = new SpinnerState(COLORS);
+        mRing = new Ring(mState, mCallback);
 
         updateSizes(DEFAULT);
-        setupAnimators();
     }
 
-    private void setSizeParameters(double progressCircleWidth, double progressCircleHeight,
-            double centerRadius, double strokeWidth, float arrowWidth, float arrowHeight) {
-        final Ring ring = mRing;
-        final DisplayMetrics metrics = mResources.getDisplayMetrics();
-        final float screenDensity = metrics.density;
+    private MaterialProgressDrawable(ProgressState state, Resources res) {
+        mResources = res;
+        mProgressState = state;
 
-        mWidth = progressCircleWidth * screenDensity;
-        mHeight = progressCircleHeight * screenDensity;
-        ring.setStrokeWidth((float) strokeWidth * screenDensity);
-        ring.setCenterRadius(centerRadius * screenDensity);
+        mState = new SpinnerState(state.mColors);
+        mRing = new Ring(mState, mCallback);
+
+        mState.setPerceptualColors(state.mPerceptualColors);
+        mKeyframeResolution = state.mKeyframeResolution;
+        applySize();
+        mRing.setShowArrow(state.mShowArrow);
+        mRing.setBackgroundColor(state.mBackgroundColor);
+        mRing.setAlpha(state.mAlpha);
+    }
+
+    /**
+     * Returns the configuration for a setter to modify, copying it first if it is shared.
+     */
+    private ProgressState mutableState() {
+        if (mProgressState.mShared) {
+            mProgressState = new ProgressState(mProgressState);
+        }
+        return mProgressState;
+    }
+
+    /**
+     * The returned state is shared from now on, so the next setter called on this drawable
+     * copies it instead of changing the drawables created from it.
+     */
+    @Override
+    public ConstantState getConstantState() {
+        mProgressState.mShared = true;
+        return mProgressState;
+    }
+
+    /**
+     * Makes sure the configuration of this drawable is not shared. Setters copy a shared
+     * configuration anyway, so this is only needed to follow the {@link Drawable} contract.
+     */
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        mutableState();
+        return this;
+    }
+
+    private void setMetrics(SpinnerMetrics metrics) {
+        final Ring ring = mRing;
+        mWidth = metrics.mDiameter;
+        mHeight = metrics.mDiameter;
+        ring.setStrokeWidth(metrics.mStrokeWidth);
+        ring.setCenterRadius(metrics.mCenterRadius);
         ring.setColorIndex(0);
-        ring.setArrowDimensions(arrowWidth * screenDensity, arrowHeight * screenDensity);
-        ring.setInsets((int) mWidth, (int) mHeight);
+        ring.setArrowDimensions(metrics.mArrowWidth, metrics.mArrowHeight);
+        ring.setStrokeInset(metrics.mStrokeInset);
+        updateKeyframes();
+    }
+
+    /**
+     * Blends between consecutive colors of the scheme in the perceptual OKLab color space
+     * instead of per channel. Both are precomputed, so neither costs more per frame.
+     *
+     * @param perceptual {@code true} to blend in OKLab
+     */
+    public void setPerceptualColorBlending(boolean perceptual) {
+        mutableState().mPerceptualColors = perceptual;
+        mState.setPerceptualColors(perceptual);
+        invalidateSelf();
+    }
+
+    public boolean isPerceptualColorBlending() {
+        return mState.mPerceptualColors;
+    }
+
+    /**
+     * Switches the indeterminate animation to baked keyframe tables sampled at the given
+     * resolution instead of evaluating the interpolator on every frame. A resolution too coarse
+     * to stay within {@link SpinnerKeyframes#MAX_ERROR} of the live math keeps the live math.
+     *
+     * @param resolution samples per cycle, or 0 to use the live math
+     */
+    public void setKeyframeResolution(int resolution) {
+        mutableState().mKeyframeResolution = resolution;
+        mKeyframeResolution = resolution;
+        updateKeyframes();
+    }
+
+    public int getKeyframeResolution() {
+        return mKeyframes != null ? mKeyframes.getResolution() : 0;
+    }
+
+    /** The tables depend on the minimum arc, so they are re-obtained whenever the size changes. */
+    private void updateKeyframes() {
+        mKeyframes = mKeyframeResolution > 0 ? SpinnerKeyframes.obtain(
+                SpinnerGeometry.STYLE_MATERIAL, getMinProgressArc(), mKeyframeResolution)
+                : null;
     }
 
     /**
@@ -162,19 +244,37 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
      *            {MaterialProgressDrawable.NORMAL}
      */
     public void updateSizes(@ProgressDrawableSize int size) {
-        if (size == LARGE) {
-            setSizeParameters(CIRCLE_DIAMETER_LARGE, CIRCLE_DIAMETER_LARGE, CENTER_RADIUS_LARGE,
-                    STROKE_WIDTH_LARGE, ARROW_WIDTH_LARGE, ARROW_HEIGHT_LARGE);
-        } else {
-            setSizeParameters(CIRCLE_DIAMETER, CIRCLE_DIAMETER, CENTER_RADIUS, STROKE_WIDTH,
-                    ARROW_WIDTH, ARROW_HEIGHT);
-        }
+        final ProgressState state = mutableState();
+        state.mSize = size;
+        state.mDiameter = 0;
+        applySize();
+    }
+
+    /**
+     * Set the overall size for the progress spinner to any diameter. The radius and stroke
+     * width of the ring are scaled from those of the nearest size.
+     *
+     * @param diameter diameter in dp, from 16 to 96
+     */
+    public void setDiameter(float diameter) {
+        SpinnerMetrics.checkDiameter(diameter);
+        mutableState().mDiameter = diameter;
+        applySize();
+    }
+
+    private void applySize() {
+        final ProgressState state = mProgressState;
+        final float diameter = state.mDiameter > 0 ? state.mDiameter
+                : SpinnerMetrics.getDiameter(state.mSize == LARGE);
+        setMetrics(SpinnerMetrics.obtain(SpinnerGeometry.STYLE_MATERIAL, diameter,
+                mResources.getDisplayMetrics().density));
     }
 
     /**
      * @param show Set to true to display the arrowhead on the progress spinner.
      */
     public void showArrow(boolean show) {
+        mutableState().mShowArrow = show;
         mRing.setShowArrow(show);
     }
 
@@ -192,6 +292,7 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
      * @param endAngle end angle
      */
     public void setStartEndTrim(float startAngle, float endAngle) {
+        mCyclesBegun = false;
         mRing.setStartTrim(startAngle);
         mRing.setEndTrim(endAngle);
     }
@@ -209,6 +310,7 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
      * Update the background color of the circle image view.
      */
     public void setBackgroundColor(int color) {
+        mutableState().mBackgroundColor = color;
         mRing.setBackgroundColor(color);
     }
 
@@ -220,7 +322,10 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
      * @param colors
      */
     public void setColorSchemeColors(int... colors) {
-        mRing.setColors(colors);
+        // Copied, since the array may end up shared with other drawables.
+        final int[] scheme = colors.clone();
+        mutableState().mColors = scheme;
+        mRing.setColors(scheme);
         mRing.setColorIndex(0);
     }
 
@@ -234,17 +339,84 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
         return (int) mWidth;
     }
 
+    /**
+     * Caps how often the running animation redraws. Skipped vsyncs don't change the timing of
+     * the animation.
+     *
+     * @param frameRate frames per second, {@link FrameRateLimiter#FRAME_RATE_DISPLAY} to draw on
+     *                  every vsync or {@link FrameRateLimiter#FRAME_RATE_DEFAULT} to follow the
+     *                  process-wide default
+     */
+    public void setFrameRate(int frameRate) {
+        mFrameRateLimiter.setFrameRate(frameRate);
+    }
+
+    public int getFrameRate() {
+        return mFrameRateLimiter.getFrameRate();
+    }
+
+    /**
+     * Starts or stops recording {@link FrameStats} for this drawable. Recording does not
+     * allocate once enabled.
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            mFrameStats = null;
+        } else if (mFrameStats == null) {
+            mFrameStats = new FrameStats();
+        }
+    }
+
+    /**
+     * Returns the frame statistics of this drawable, or {@code null} unless enabled with
+     * {@link #setFrameStatsEnabled(boolean)}.
+     */
+    @Nullable
+    public FrameStats getFrameStats() {
+        return mFrameStats;
+    }
+
     @Override
     public void draw(Canvas c) {
+        final FrameStats stats = mFrameStats;
+        final long drawStartNanos = stats != null ? System.nanoTime() : 0;
         final Rect bounds = getBounds();
         final int saveCount = c.save();
-        c.rotate(mRotation, bounds.exactCenterX(), bounds.exactCenterY());
+        c.rotate(mState.mGroupRotation, bounds.exactCenterX(), bounds.exactCenterY());
         mRing.draw(c, bounds);
         c.restoreToCount(saveCount);
+        if (stats != null) {
+            stats.recordDraw(System.nanoTime() - drawStartNanos);
+        }
+    }
+
+    /**
+     * Limits the damage of every invalidation to the ring and its arrow, including the area the
+     * previous frame covered.
+     */
+    @Override
+    public void invalidateSelf() {
+        final Rect current = mTempRect;
+        mRing.getRingBounds(getBounds(), current);
+        mDirtyBounds.set(mRingBounds);
+        mDirtyBounds.union(current);
+        mRingBounds.set(current);
+        super.invalidateSelf();
+    }
+
+    /**
+     * Returns the area invalidated by the last {@link #invalidateSelf()}, which is the union of
+     * the ring and arrow bounds of the previous and the current frame.
+     */
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return mDirtyBounds;
     }
 
     @Override
     public void setAlpha(int alpha) {
+        mutableState().mAlpha = alpha;
         mRing.setAlpha(alpha);
     }
 
@@ -259,13 +431,13 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
 
     @SuppressWarnings("unused")
     void setRotation(float rotation) {
-        mRotation = rotation;
+        mState.mGroupRotation = rotation;
         invalidateSelf();
     }
 
     @SuppressWarnings("unused")
     private float getRotation() {
-        return mRotation;
+        return mState.mGroupRotation;
     }
 
     @Override
@@ -275,188 +447,298 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
 
     @Override
     public boolean isRunning() {
-        final ArrayList<Animation> animators = mAnimators;
-        final int N = animators.size();
-        for (int i = 0; i < N; i++) {
-            final Animation animator = animators.get(i);
-            if (animator.hasStarted() && !animator.hasEnded()) {
-                return true;
-            }
-        }
-        return false;
+        return mRunning;
     }
 
     @Override
     public void start() {
-        mAnimation.reset();
-        mRing.storeOriginals();
-        // Already showing some part of the ring
-        if (mRing.getEndTrim() != mRing.getStartTrim()) {
-            mFinishing = true;
-            mAnimation.setDuration(ANIMATION_DURATION / 2);
-            mParent.startAnimation(mAnimation);
+        if (mDeterminate) {
+            jumpToProgress();
         } else {
-            mRing.setColorIndex(0);
-            mRing.resetOriginals();
-            mAnimation.setDuration(ANIMATION_DURATION);
-            mParent.startAnimation(mAnimation);
+            beginCycles();
+        }
+        mFrameRateLimiter.reset();
+        if (mFrameStats != null) {
+            mFrameStats.restartIntervals();
         }
+        mPaused = false;
+        mRunning = true;
+        SpinnerTicker.getInstance().register(this);
     }
 
-    @Override
-    public void stop() {
-        mParent.clearAnimation();
-        setRotation(0);
-        mRing.setShowArrow(false);
-        mRing.setColorIndex(0);
-        mRing.resetOriginals();
+    /**
+     * Sets the state up for the first spinning cycle, which closes an arc that is already visible
+     * before the spinner starts.
+     */
+    private void beginCycles() {
+        SpinnerGeometry.beginAnimation(mState);
+        mClosingArc = mState.mCloseArc;
+        mCyclesBegun = true;
+        mStartTime = UNSET_START_TIME;
+        mResumePhase = 0;
     }
 
-    float getMinProgressArc(Ring ring) {
-        return (float) Math.toRadians(
-                ring.getStrokeWidth() / (2 * Math.PI * ring.getCenterRadius()));
+    /**
+     * Moves the spinning animation to the given time since it started, as if it had run that
+     * long. The frame only depends on this time, so hours ahead cost the same as the next frame.
+     * A running animation continues from there on its next frame; a stopped one shows the frame
+     * until it is started, which starts from the beginning again. Has no effect on a
+     * determinate arc.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void setAnimationTime(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            throw new IllegalArgumentException("Animation time must not be negative: "
+                    + elapsedMillis);
+        }
+        if (mDeterminate) {
+            return;
+        }
+        if (!mRunning && !mCyclesBegun) {
+            beginCycles();
+        }
+        computeFrameAt(elapsedMillis);
+        mResumePhase = elapsedMillis;
+        mStartTime = UNSET_START_TIME;
+        invalidateSelf();
     }
 
-    // Adapted from ArgbEvaluator.java
-    private int evaluateColorChange(float fraction, int startValue, int endValue) {
-        int startInt = (Integer) startValue;
-        int startA = (startInt >> 24) & 0xff;
-        int startR = (startInt >> 16) & 0xff;
-        int startG = (startInt >> 8) & 0xff;
-        int startB = startInt & 0xff;
+    /**
+     * Moves the animation to the given time, see {@link #setAnimationTime(long)}, and draws that
+     * frame on the canvas, for instance to render frames off screen without waiting for them.
+     *
+     * @param elapsedMillis time since the animation started
+     */
+    public void renderFrameAt(@NonNull Canvas canvas, long elapsedMillis) {
+        setAnimationTime(elapsedMillis);
+        draw(canvas);
+    }
 
-        int endInt = (Integer) endValue;
-        int endA = (endInt >> 24) & 0xff;
-        int endR = (endInt >> 16) & 0xff;
-        int endG = (endInt >> 8) & 0xff;
-        int endB = endInt & 0xff;
+    /**
+     * Sets the clock the animation reads its time from on every frame, instead of the frame time
+     * of the {@link SpinnerTicker}. Frames are still paced by the ticker. The animation continues
+     * from the point it is at, read from the new clock from the next frame on.
+     *
+     * @param timeSource the clock, or {@code null} to use the frame time
+     */
+    public void setTimeSource(@Nullable TimeSource timeSource) {
+        if (mStartTime != UNSET_START_TIME) {
+            mResumePhase = mLastFrameTime - mStartTime;
+            mStartTime = UNSET_START_TIME;
+        }
+        mTimeSource = timeSource;
+        mFrameRateLimiter.reset();
+    }
 
-        return (int) ((startA + (int) (fraction * (endA - startA))) << 24)
-                | (int) ((startR + (int) (fraction * (endR - startR))) << 16)
-                | (int) ((startG + (int) (fraction * (endG - startG))) << 8)
-                | (int) ((startB + (int) (fraction * (endB - startB))));
+    /**
+     * Shows the determinate arc at the latest progress right away, without a morph.
+     */
+    private void jumpToProgress() {
+        SpinnerGeometry.startDeterminateMorph(mState);
+        mShownProgress = mProgress;
+        mMorphing = false;
+        SpinnerGeometry.computeDeterminateFrame(1f, mProgress, mState);
     }
 
     /**
-     * Update the ring color if this is within the last 25% of the animation.
-     * The new ring color will be a translation from the starting ring color to
-     * the next color.
+     * Shows a determinate arc covering the given fraction of the ring, starting at its top. A
+     * spinning arc morphs into it without restarting the animation. Later values are eased
+     * toward on the following frames, so calling this more than once per frame costs no extra
+     * draw. Main thread only; {@link CircleLoadingView#setProgress(float)} can be called from any
+     * thread.
+     *
+     * @param progress progress from [0..1]
      */
-    void updateRingColor(float interpolatedTime, Ring ring) {
-        if (interpolatedTime > COLOR_START_DELAY_OFFSET) {
-            // scale the interpolatedTime so that the full
-            // transformation from 0 - 1 takes place in the
-            // remaining time
-            ring.setColor(evaluateColorChange((interpolatedTime - COLOR_START_DELAY_OFFSET)
-                    / (1.0f - COLOR_START_DELAY_OFFSET), ring.getStartingColor(),
-                    ring.getNextColor()));
+    public void setProgress(float progress) {
+        mProgress = Math.max(0f, Math.min(1f, progress));
+        if (!mDeterminate) {
+            setIndeterminate(false);
+        } else if (!mRunning) {
+            jumpToProgress();
+            invalidateSelf();
         }
     }
 
-    void applyFinishTranslation(float interpolatedTime, Ring ring) {
-        // shrink back down and complete a full rotation before
-        // starting other circles
-        // Rotation goes between [0..1].
-        updateRingColor(interpolatedTime, ring);
-        float targetRotation = (float) (Math.floor(ring.getStartingRotation() / MAX_PROGRESS_ARC)
-                + 1f);
-        final float minProgressArc = getMinProgressArc(ring);
-        final float startTrim = ring.getStartingStartTrim()
-                + (ring.getStartingEndTrim() - minProgressArc - ring.getStartingStartTrim())
-                * interpolatedTime;
-        ring.setStartTrim(startTrim);
-        ring.setEndTrim(ring.getStartingEndTrim());
-        final float rotation = ring.getStartingRotation()
-                + ((targetRotation - ring.getStartingRotation()) * interpolatedTime);
-        ring.setRotation(rotation);
+    /**
+     * Returns the latest progress set with {@link #setProgress(float)}.
+     */
+    public float getProgress() {
+        return mProgress;
     }
 
-    private void setupAnimators() {
-        final Ring ring = mRing;
-        final Animation animation = new Animation() {
-                @Override
-            public void applyTransformation(float interpolatedTime, Transformation t) {
-                if (mFinishing) {
-                    applyFinishTranslation(interpolatedTime, ring);
-                } else {
-                    // The minProgressArc is calculated from 0 to createDrawable an
-                    // angle that matches the stroke width.
-                    final float minProgressArc = getMinProgressArc(ring);
-                    final float startingEndTrim = ring.getStartingEndTrim();
-                    final float startingTrim = ring.getStartingStartTrim();
-                    final float startingRotation = ring.getStartingRotation();
-
-                    updateRingColor(interpolatedTime, ring);
-
-                    // Moving the start trim only occurs in the first 50% of a
-                    // single ring animation
-                    if (interpolatedTime <= START_TRIM_DURATION_OFFSET) {
-                        // scale the interpolatedTime so that the full
-                        // transformation from 0 - 1 takes place in the
-                        // remaining time
-                        final float scaledTime = (interpolatedTime)
-                                / (1.0f - START_TRIM_DURATION_OFFSET);
-                        final float startTrim = startingTrim
-                                + ((MAX_PROGRESS_ARC - minProgressArc) * MATERIAL_INTERPOLATOR
-                                        .getInterpolation(scaledTime));
-                        ring.setStartTrim(startTrim);
-                    }
-
-                    // Moving the end trim starts after 50% of a single ring
-                    // animation completes
-                    if (interpolatedTime > END_TRIM_START_DELAY_OFFSET) {
-                        // scale the interpolatedTime so that the full
-                        // transformation from 0 - 1 takes place in the
-                        // remaining time
-                        final float minArc = MAX_PROGRESS_ARC - minProgressArc;
-                        float scaledTime = (interpolatedTime - START_TRIM_DURATION_OFFSET)
-                                / (1.0f - START_TRIM_DURATION_OFFSET);
-                        final float endTrim = startingEndTrim
-                                + (minArc * MATERIAL_INTERPOLATOR.getInterpolation(scaledTime));
-                        ring.setEndTrim(endTrim);
-                    }
-
-                    final float rotation = startingRotation + (0.25f * interpolatedTime);
-                    ring.setRotation(rotation);
-
-                    float groupRotation = ((FULL_ROTATION / NUM_POINTS) * interpolatedTime)
-                            + (FULL_ROTATION * (mRotationCount / NUM_POINTS));
-                    setRotation(groupRotation);
-                }
-            }
-        };
-        animation.setRepeatCount(Animation.INFINITE);
-        animation.setRepeatMode(Animation.RESTART);
-        animation.setInterpolator(LINEAR_INTERPOLATOR);
-        animation.setAnimationListener(new Animation.AnimationListener() {
-
-                @Override
-            public void onAnimationStart(Animation animation) {
-                mRotationCount = 0;
+    /**
+     * Switches between the spinning arc and the determinate arc of {@link #setProgress(float)}.
+     * While running, the determinate arc is morphed into, and leaving it closes the arc before
+     * the spinner starts again, the same as a visible arc when the animation is started.
+     *
+     * @param indeterminate {@code true} to spin, the default
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (mDeterminate != indeterminate) {
+            return;
+        }
+        mDeterminate = !indeterminate;
+        if (!mRunning) {
+            if (mDeterminate) {
+                jumpToProgress();
+            } else {
+                mState.resetOriginals();
+                mCyclesBegun = false;
             }
+            invalidateSelf();
+        } else if (mDeterminate) {
+            SpinnerGeometry.startDeterminateMorph(mState);
+            mShownProgress = mProgress;
+            mMorphing = true;
+            mMorphStartTime = UNSET_START_TIME;
+        } else {
+            beginCycles();
+        }
+    }
+
+    public boolean isIndeterminate() {
+        return !mDeterminate;
+    }
 
-                @Override
-            public void onAnimationEnd(Animation animation) {
-                // do nothing
+    /**
+     * Advances the morph into the determinate arc and eases the arc toward the latest progress.
+     *
+     * @return {@code true} if the arc changed since the last frame
+     */
+    private boolean computeDeterminateFrame(long frameTimeMillis) {
+        final float shown = SpinnerGeometry.approachProgress(mShownProgress, mProgress,
+                frameTimeMillis - mLastFrameTime);
+        float morphFraction = 1f;
+        if (mMorphing) {
+            if (mMorphStartTime == UNSET_START_TIME) {
+                mMorphStartTime = frameTimeMillis;
             }
+            morphFraction = Math.min(1f, (frameTimeMillis - mMorphStartTime)
+                    / (float) SpinnerGeometry.MORPH_DURATION);
+            mMorphing = morphFraction < 1f;
+        } else if (shown == mShownProgress) {
+            return false;
+        }
+        mShownProgress = shown;
+        SpinnerGeometry.computeDeterminateFrame(morphFraction, shown, mState);
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        mRunning = false;
+        mPaused = false;
+        mCyclesBegun = false;
+        SpinnerTicker.getInstance().unregister(this);
+        mState.mFinishing = false;
+        setRotation(0);
+        mRing.setShowArrow(false);
+        mState.setColorIndex(0);
+        mState.resetOriginals();
+    }
 
-                @Override
-            public void onAnimationRepeat(Animation animation) {
-                ring.storeOriginals();
-                ring.goToNextColor();
-                ring.setStartTrim(ring.getEndTrim());
-                if (mFinishing) {
-                    // finished closing the last ring from the swipe gesture; go
-                    // into progress mode
-                    mFinishing = false;
-                    animation.setDuration(ANIMATION_DURATION);
-                    ring.setShowArrow(false);
-                } else {
-                    mRotationCount = (mRotationCount + 1) % (NUM_POINTS);
-                }
+    /**
+     * The minProgressArc is calculated from 0 to create an angle that matches the stroke width.
+     */
+    float getMinProgressArc() {
+        return SpinnerGeometry.getMaterialMinProgressArc(mRing.getStrokeWidth(),
+                mRing.getCenterRadius());
+    }
+
+    /**
+     * Update the ring start and end trim, rotation and color according to the time since the
+     * animation started.
+     */
+    private void computeFrameAt(long elapsedMillis) {
+        final boolean closing = SpinnerGeometry.computeFrameAt(SpinnerGeometry.STYLE_MATERIAL,
+                elapsedMillis, getMinProgressArc(), mKeyframes, mState);
+        if (mClosingArc && !closing) {
+            // finished closing the last ring from the swipe gesture; go
+            // into progress mode
+            mClosingArc = false;
+            mRing.setShowArrow(false);
+        }
+    }
+
+    @Override
+    public boolean doFrame(long frameTimeMillis) {
+        if (!mRunning) {
+            return false;
+        }
+        if (getCallback() == null) {
+            // The host let go of this drawable; stop ticking until it is started again.
+            mRunning = false;
+            return false;
+        }
+        final TimeSource timeSource = mTimeSource;
+        final long now = timeSource != null ? timeSource.uptimeMillis() : frameTimeMillis;
+        if (mStartTime == UNSET_START_TIME) {
+            mStartTime = now - mResumePhase;
+            mResumePhase = 0;
+        }
+        if (!mFrameRateLimiter.shouldDraw(frameTimeMillis)) {
+            // Skipped vsync; the next drawn frame is computed for its own time.
+            return true;
+        }
+        final FrameStats stats = mFrameStats;
+        final long updateStartNanos = stats != null ? System.nanoTime() : 0;
+        if (mDeterminate) {
+            if (!computeDeterminateFrame(now)) {
+                // Settled on the latest progress; nothing to draw.
+                mLastFrameTime = now;
+                return true;
             }
-        });
-        mAnimation = animation;
+        } else {
+            // A frame after a stall lands straight on the point the animation should be at.
+            computeFrameAt(now - mStartTime);
+        }
+        mLastFrameTime = now;
+        if (stats != null) {
+            final int frameRate = mFrameRateLimiter.getEffectiveFrameRate();
+            stats.recordFrame(frameTimeMillis, System.nanoTime() - updateStartNanos,
+                    frameRate > 0 ? 1000f / frameRate : stats.getVsyncIntervalMillis());
+        }
+        invalidateSelf();
+        return true;
+    }
+
+    /**
+     * Stops receiving frames while the spinner can't be seen, keeping the point of the cycle it
+     * was at. Has no effect unless the animation is running.
+     */
+    public void pause() {
+        if (!mRunning || mPaused) {
+            return;
+        }
+        mPaused = true;
+        SpinnerTicker.getInstance().unregister(this);
+        if (mStartTime != UNSET_START_TIME) {
+            mResumePhase = mLastFrameTime - mStartTime;
+            mStartTime = UNSET_START_TIME;
+        }
+    }
+
+    /**
+     * Continues a paused animation from the point of the cycle it was paused at, without a jump.
+     */
+    public void resume() {
+        if (!mRunning || !mPaused) {
+            return;
+        }
+        mPaused = false;
+        mFrameRateLimiter.reset();
+        if (mFrameStats != null) {
+            mFrameStats.restartIntervals();
+        }
+        SpinnerTicker.getInstance().register(this);
+    }
+
+    /**
+     * Returns {@code true} if the animation is running but paused.
+     */
+    public boolean isPaused() {
+        return mPaused;
     }
 
     private final Callback mCallback = new Callback() {
@@ -476,29 +758,78 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
         }
     };
 
+    /**
+     * Configuration of a drawable, shared by the drawables created from it. Never modified once
+     * {@link #mShared} is set.
+     */
+    private static final class ProgressState extends ConstantState {
+        final Resources mResources;
+        @ProgressDrawableSize
+        int mSize = DEFAULT;
+        /** Diameter in dp, or 0 to follow {@link #mSize}. */
+        float mDiameter;
+        boolean mShowArrow;
+        /** Colors of the scheme, never modified once set. */
+        int[] mColors = COLORS;
+        int mBackgroundColor;
+        boolean mPerceptualColors;
+        int mKeyframeResolution;
+        /** Alpha of the ring, 0 until set like the ring it restores. */
+        int mAlpha;
+        /** Set once the state may be referenced by more than one drawable. */
+        boolean mShared;
+
+        ProgressState(Resources res) {
+            mResources = res;
+        }
+
+        ProgressState(ProgressState orig) {
+            mResources = orig.mResources;
+            mSize = orig.mSize;
+            mDiameter = orig.mDiameter;
+            mShowArrow = orig.mShowArrow;
+            mColors = orig.mColors;
+            mBackgroundColor = orig.mBackgroundColor;
+            mPerceptualColors = orig.mPerceptualColors;
+            mKeyframeResolution = orig.mKeyframeResolution;
+            mAlpha = orig.mAlpha;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return newDrawable(mResources);
+        }
+
+        /**
+         * Sizes follow the density of the given resources.
+         */
+        @NonNull
+        @Override
+        public Drawable newDrawable(@Nullable Resources res) {
+            mShared = true;
+            return new MaterialProgressDrawable(this, res != null ? res : mResources);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+
     private static class Ring {
         private final RectF mTempBounds = new RectF();
         private final Paint mPaint = new Paint();
         private final Paint mArrowPaint = new Paint();
+        private final ArrowPathCache mArrowPaths = new ArrowPathCache();
 
         private final Callback mCallback;
+        private final SpinnerState mState;
 
-        private float mStartTrim = 0.0f;
-        private float mEndTrim = 0.0f;
-        private float mRotation = 0.0f;
         private float mStrokeWidth = 5.0f;
         private float mStrokeInset = 2.5f;
 
-        private int[] mColors;
-        // mColorIndex represents the offset into the available mColors that the
-        // progress circle should currently display. As the progress circle is
-        // animating, the mColorIndex moves by one to the next available color.
-        private int mColorIndex;
-        private float mStartingStartTrim;
-        private float mStartingEndTrim;
-        private float mStartingRotation;
         private boolean mShowArrow;
-        private Path mArrow;
         private float mArrowScale;
         private double mRingCenterRadius;
         private int mArrowWidth;
@@ -506,9 +837,9 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
         private int mAlpha;
         private final Paint mCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         private int mBackgroundColor;
-        private int mCurrentColor;
 
-        Ring(Callback callback) {
+        Ring(SpinnerState state, Callback callback) {
+            mState = state;
             mCallback = callback;
 
             mPaint.setStrokeCap(Paint.Cap.SQUARE);
@@ -532,6 +863,7 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
         public void setArrowDimensions(float width, float height) {
             mArrowWidth = (int) width;
             mArrowHeight = (int) height;
+            mArrowPaths.setDimensions(mArrowWidth, mArrowHeight);
         }
 
         /**
@@ -542,14 +874,10 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
             arcBounds.set(bounds);
             arcBounds.inset(mStrokeInset, mStrokeInset);
 
-            final float startAngle = (mStartTrim + mRotation) * 360;
-            final float endAngle = (mEndTrim + mRotation) * 360;
-            float sweepAngle = endAngle - startAngle;
+            mPaint.setColor(mState.mCurrentColor);
+            c.drawArc(arcBounds, mState.getStartAngle(), mState.getSweepAngle(), false, mPaint);
 
-            mPaint.setColor(mCurrentColor);
-            c.drawArc(arcBounds, startAngle, sweepAngle, false, mPaint);
-
-            drawTriangle(c, startAngle, sweepAngle, bounds);
+            drawTriangle(c, bounds);
 
             if (mAlpha < 255) {
                 mCirclePaint.setColor(mBackgroundColor);
@@ -559,36 +887,47 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
             }
         }
 
-        private void drawTriangle(Canvas c, float startAngle, float sweepAngle, Rect bounds) {
+        /**
+         * Computes the square that contains the ring and the arrow at any rotation, or all of the
+         * bounds while the background circle fades the spinner out.
+         */
+        void getRingBounds(Rect bounds, Rect out) {
+            if (bounds.isEmpty() || mAlpha < 255) {
+                out.set(bounds);
+                return;
+            }
+            final double arcExtent = Math.min(bounds.width(), bounds.height()) / 2.0
+                    - mStrokeInset + mStrokeWidth / 2;
+            double extent = arcExtent;
+            if (mShowArrow) {
+                extent = Math.max(extent, Math.hypot(mRingCenterRadius + mArrowWidth * mArrowScale,
+                        mArrowHeight * mArrowScale));
+            }
+            // One more pixel for antialiasing.
+            final int radius = (int) Math.ceil(extent) + 1;
+            final int centerX = bounds.centerX();
+            final int centerY = bounds.centerY();
+            out.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        }
+
+        private void drawTriangle(Canvas c, Rect bounds) {
             if (mShowArrow) {
-                if (mArrow == null) {
-                    mArrow = new android.graphics.Path();
-                    mArrow.setFillType(android.graphics.Path.FillType.EVEN_ODD);
-                } else {
-                    mArrow.reset();
-                }
+                final float scale = ArrowPathCache.quantizeScale(mArrowScale);
 
                 // Adjust the position of the triangle so that it is inset as
                 // much as the arc, but also centered on the arc.
-                float inset = (int) mStrokeInset / 2 * mArrowScale;
+                float inset = (int) mStrokeInset / 2 * scale;
                 float x = (float) (mRingCenterRadius * Math.cos(0) + bounds.exactCenterX());
                 float y = (float) (mRingCenterRadius * Math.sin(0) + bounds.exactCenterY());
 
-                // Update the path each time. This works around an issue in SKIA
-                // where concatenating a rotation matrix to a scale matrix
-                // ignored a starting negative rotation. This appears to have
-                // been fixed as of API 21.
-                mArrow.moveTo(0, 0);
-                mArrow.lineTo(mArrowWidth * mArrowScale, 0);
-                mArrow.lineTo((mArrowWidth * mArrowScale / 2), (mArrowHeight
-                        * mArrowScale));
-                mArrow.offset(x - inset, y);
-                mArrow.close();
-                // draw a triangle
-                mArrowPaint.setColor(mCurrentColor);
-                c.rotate(startAngle + sweepAngle - ARROW_OFFSET_ANGLE, bounds.exactCenterX(),
-                        bounds.exactCenterY());
-                c.drawPath(mArrow, mArrowPaint);
+                // draw a triangle, translated from the cached path to the end of the arc
+                mArrowPaint.setColor(mState.mCurrentColor);
+                c.save();
+                c.rotate(SpinnerGeometry.getArrowRotation(SpinnerGeometry.STYLE_MATERIAL, mState),
+                        bounds.exactCenterX(), bounds.exactCenterY());
+                c.translate(x - inset, y);
+                c.drawPath(mArrowPaths.get(scale), mArrowPaint);
+                c.restore();
             }
         }
 
@@ -598,20 +937,8 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
          * @param colors Array of integers describing the colors. Must be non-<code>null</code>.
          */
         public void setColors(@NonNull int[] colors) {
-            mColors = colors;
-            // if colors are reset, make sure to reset the color index as well
-            setColorIndex(0);
-        }
-
-        /**
-         * Set the absolute color of the progress spinner. This is should only
-         * be used when animating between current and next color when the
-         * spinner is rotating.
-         *
-         * @param color int describing the color.
-         */
-        public void setColor(int color) {
-            mCurrentColor = color;
+            // if colors are reset, the color index is reset as well
+            mState.setColors(colors);
         }
 
         /**
@@ -619,27 +946,7 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
          *            the progress spinner.
          */
         public void setColorIndex(int index) {
-            mColorIndex = index;
-            mCurrentColor = mColors[mColorIndex];
-        }
-
-        /**
-         * @return int describing the next color the progress spinner should use when drawing.
-         */
-        public int getNextColor() {
-            return mColors[getNextColorIndex()];
-        }
-
-        private int getNextColorIndex() {
-            return (mColorIndex + 1) % (mColors.length);
-        }
-
-        /**
-         * Proceed to the next available ring color. This will automatically
-         * wrap back to the beginning of colors.
-         */
-        public void goToNextColor() {
-            setColorIndex(getNextColorIndex());
+            mState.setColorIndex(index);
         }
 
         public void setColorFilter(ColorFilter filter) {
@@ -677,58 +984,43 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
 
         @SuppressWarnings("unused")
         public void setStartTrim(float startTrim) {
-            mStartTrim = startTrim;
+            mState.mStartTrim = startTrim;
             invalidateSelf();
         }
 
         @SuppressWarnings("unused")
         public float getStartTrim() {
-            return mStartTrim;
-        }
-
-        public float getStartingStartTrim() {
-            return mStartingStartTrim;
-        }
-
-        public float getStartingEndTrim() {
-            return mStartingEndTrim;
-        }
-
-        public int getStartingColor() {
-            return mColors[mColorIndex];
+            return mState.mStartTrim;
         }
 
         @SuppressWarnings("unused")
         public void setEndTrim(float endTrim) {
-            mEndTrim = endTrim;
+            mState.mEndTrim = endTrim;
             invalidateSelf();
         }
 
         @SuppressWarnings("unused")
         public float getEndTrim() {
-            return mEndTrim;
+            return mState.mEndTrim;
         }
 
         @SuppressWarnings("unused")
         public void setRotation(float rotation) {
-            mRotation = rotation;
+            mState.mRotation = rotation;
             invalidateSelf();
         }
 
         @SuppressWarnings("unused")
         public float getRotation() {
-            return mRotation;
+            return mState.mRotation;
         }
 
-        public void setInsets(int width, int height) {
-            final float minEdge = (float) Math.min(width, height);
-            float insets;
-            if (mRingCenterRadius <= 0 || minEdge < 0) {
-                insets = (float) Math.ceil(mStrokeWidth / 2.0f);
-            } else {
-                insets = (float) (minEdge / 2.0f - mRingCenterRadius);
-            }
-            mStrokeInset = insets;
+        /**
+         * @param strokeInset Distance in px from the edge of the drawable to the circle the
+         *            progress spinner arc traces.
+         */
+        public void setStrokeInset(float strokeInset) {
+            mStrokeInset = strokeInset;
         }
 
         @SuppressWarnings("unused")
@@ -768,35 +1060,6 @@ class MaterialProgressDrawable extends Drawable implements Animatable {
             }
         }
 
-        /**
-         * @return The amount the progress spinner is currently rotated, between [0..1].
-         */
-        public float getStartingRotation() {
-            return mStartingRotation;
-        }
-
-        /**
-         * If the start / end trim are offset to begin with, store them so that
-         * animation starts from that offset.
-         */
-        public void storeOriginals() {
-            mStartingStartTrim = mStartTrim;
-            mStartingEndTrim = mEndTrim;
-            mStartingRotation = mRotation;
-        }
-
-        /**
-         * Reset the progress spinner to default rotation, start and end angles.
-         */
-        public void resetOriginals() {
-            mStartingStartTrim = 0;
-            mStartingEndTrim = 0;
-            mStartingRotation = 0;
-            setStartTrim(0);
-            setEndTrim(0);
-            setRotation(0);
-        }
-
         private void invalidateSelf() {
             mCallback.invalidateDrawable(null);
         }
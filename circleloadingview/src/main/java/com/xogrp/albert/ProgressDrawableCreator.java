@@ -1,24 +1,48 @@
 package com.xogrp.albert;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.graphics.Color;
+import android.graphics.drawable.AnimatedVectorDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.OvalShape;
+import android.os.Build;
 
+/**
+ * Creates and drives the drawable shown by {@link CircleLoadingView} and
+ * {@link LiteCircleLoadingView}. Drawables created here are
+ * advanced by the process-wide {@link SpinnerTicker} rather than owning an animator each.
+ */
 interface ProgressDrawableCreator {
-    Drawable createDrawable(Context context, CircleLoadingView circleLoadingView);
+    Drawable createDrawable(Context context);
     Drawable getDrawable();
     void setSize(int size);
+    void setDiameter(float diameter);
     void setBackgroundColor(int color);
     void setColorSchemeColors(int[] colors);
     void stop();
     void start();
+    void pause();
+    void resume();
     void setArrowEnabled(boolean showArrow);
+    void setSpriteAtlasEnabled(boolean enabled);
+    void setFrameRate(int frameRate);
+    void setFrameStatsEnabled(boolean enabled);
+    void setPerceptualColorBlending(boolean perceptual);
+    void setProgress(float progress);
+    void setIndeterminate(boolean indeterminate);
+    void setAnimationTime(long elapsedMillis);
+    void setTimeSource(TimeSource timeSource);
+    FrameStats getFrameStats();
 
     class CircularProgressDrawableCreator implements ProgressDrawableCreator{
 
         private CircularProgressDrawable mCircularProgressDrawable;
 
         @Override
-        public Drawable createDrawable(Context context, CircleLoadingView circleLoadingView) {
+        public Drawable createDrawable(Context context) {
             mCircularProgressDrawable = new CircularProgressDrawable(context);
             return mCircularProgressDrawable;
         }
@@ -33,6 +57,11 @@ interface ProgressDrawableCreator {
             mCircularProgressDrawable.setStyle(size);
         }
 
+        @Override
+        public void setDiameter(float diameter) {
+            mCircularProgressDrawable.setDiameter(diameter);
+        }
+
         @Override
         public void setBackgroundColor(int color) {
             mCircularProgressDrawable.setBackgroundColor(color);
@@ -53,10 +82,65 @@ interface ProgressDrawableCreator {
             mCircularProgressDrawable.start();
         }
 
+        @Override
+        public void pause() {
+            mCircularProgressDrawable.pause();
+        }
+
+        @Override
+        public void resume() {
+            mCircularProgressDrawable.resume();
+        }
+
         @Override
         public void setArrowEnabled(boolean showArrow) {
             mCircularProgressDrawable.setArrowEnabled(showArrow);
         }
+
+        @Override
+        public void setSpriteAtlasEnabled(boolean enabled) {
+            mCircularProgressDrawable.setSpriteAtlasEnabled(enabled);
+        }
+
+        @Override
+        public void setFrameRate(int frameRate) {
+            mCircularProgressDrawable.setFrameRate(frameRate);
+        }
+
+        @Override
+        public void setFrameStatsEnabled(boolean enabled) {
+            mCircularProgressDrawable.setFrameStatsEnabled(enabled);
+        }
+
+        @Override
+        public void setPerceptualColorBlending(boolean perceptual) {
+            mCircularProgressDrawable.setPerceptualColorBlending(perceptual);
+        }
+
+        @Override
+        public void setProgress(float progress) {
+            mCircularProgressDrawable.setProgress(progress);
+        }
+
+        @Override
+        public void setIndeterminate(boolean indeterminate) {
+            mCircularProgressDrawable.setIndeterminate(indeterminate);
+        }
+
+        @Override
+        public void setAnimationTime(long elapsedMillis) {
+            mCircularProgressDrawable.setAnimationTime(elapsedMillis);
+        }
+
+        @Override
+        public void setTimeSource(TimeSource timeSource) {
+            mCircularProgressDrawable.setTimeSource(timeSource);
+        }
+
+        @Override
+        public FrameStats getFrameStats() {
+            return mCircularProgressDrawable.getFrameStats();
+        }
     }
 
     class MaterialProgressDrawableCreator implements ProgressDrawableCreator{
@@ -64,8 +148,8 @@ interface ProgressDrawableCreator {
         private MaterialProgressDrawable mMaterialProgressDrawable;
 
         @Override
-        public Drawable createDrawable(Context context, CircleLoadingView circleLoadingView) {
-            mMaterialProgressDrawable = new MaterialProgressDrawable(context, circleLoadingView);
+        public Drawable createDrawable(Context context) {
+            mMaterialProgressDrawable = new MaterialProgressDrawable(context);
             return mMaterialProgressDrawable;
         }
 
@@ -79,6 +163,11 @@ interface ProgressDrawableCreator {
             mMaterialProgressDrawable.updateSizes(size);
         }
 
+        @Override
+        public void setDiameter(float diameter) {
+            mMaterialProgressDrawable.setDiameter(diameter);
+        }
+
         @Override
         public void setBackgroundColor(int color) {
             mMaterialProgressDrawable.setBackgroundColor(color);
@@ -99,9 +188,423 @@ interface ProgressDrawableCreator {
             mMaterialProgressDrawable.start();
         }
 
+        @Override
+        public void pause() {
+            mMaterialProgressDrawable.pause();
+        }
+
+        @Override
+        public void resume() {
+            mMaterialProgressDrawable.resume();
+        }
+
         @Override
         public void setArrowEnabled(boolean showArrow) {
             mMaterialProgressDrawable.showArrow(showArrow);
         }
+
+        @Override
+        public void setSpriteAtlasEnabled(boolean enabled) {
+            // Atlas playback is only implemented for the circular style.
+        }
+
+        @Override
+        public void setFrameRate(int frameRate) {
+            mMaterialProgressDrawable.setFrameRate(frameRate);
+        }
+
+        @Override
+        public void setFrameStatsEnabled(boolean enabled) {
+            mMaterialProgressDrawable.setFrameStatsEnabled(enabled);
+        }
+
+        @Override
+        public void setPerceptualColorBlending(boolean perceptual) {
+            mMaterialProgressDrawable.setPerceptualColorBlending(perceptual);
+        }
+
+        @Override
+        public void setProgress(float progress) {
+            mMaterialProgressDrawable.setProgress(progress);
+        }
+
+        @Override
+        public void setIndeterminate(boolean indeterminate) {
+            mMaterialProgressDrawable.setIndeterminate(indeterminate);
+        }
+
+        @Override
+        public void setAnimationTime(long elapsedMillis) {
+            mMaterialProgressDrawable.setAnimationTime(elapsedMillis);
+        }
+
+        @Override
+        public void setTimeSource(TimeSource timeSource) {
+            mMaterialProgressDrawable.setTimeSource(timeSource);
+        }
+
+        @Override
+        public FrameStats getFrameStats() {
+            return mMaterialProgressDrawable.getFrameStats();
+        }
+    }
+
+    /**
+     * Draws the circular motion with an {@link AnimatedVectorDrawable}, which the platform
+     * animates on the RenderThread from API 25, so the spinner keeps turning while the main thread
+     * is busy. The motion is described by the {@code clv_spinner_*} resources, built from the
+     * {@link SpinnerGeometry} constants.
+     *
+     * <p>The ring is tinted with the color of the scheme. Below API 25, where the animation still
+     * runs on the main thread, or while the arrow is enabled or progress is shown, this creator
+     * falls back to {@link CircularProgressDrawableCreator}, since the arrow and the determinate arc have to
+     * follow state that changes on every frame. It also falls back for a scheme of more than one
+     * color, which the vector drawable can't cycle through, and for a diameter other than the two
+     * sizes the vector resources are drawn at.
+     */
+    @TargetApi(Build.VERSION_CODES.N_MR1)
+    class VectorProgressDrawableCreator implements ProgressDrawableCreator {
+
+        private static final boolean SUPPORTED =
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1;
+
+        /** Distance in dp from the edge to the inner circle of the ring, per size. */
+        private static final float BACKGROUND_INSET = 20f - 7.5f;
+        private static final float BACKGROUND_INSET_LARGE = 28f - 11f;
+
+        private final CircularProgressDrawableCreator mFallback =
+                new CircularProgressDrawableCreator();
+        private Context mContext;
+        private AnimatedVectorDrawable mVector;
+        private ShapeDrawable mBackground;
+        private LayerDrawable mDrawable;
+        private boolean mUseFallback;
+        private boolean mRunning;
+        private boolean mPaused;
+
+        private int mSize = CircularProgressDrawable.DEFAULT;
+        /** Diameter in dp, or 0 to follow {@link #mSize}. */
+        private float mDiameter;
+        private int mBackgroundColor = Color.TRANSPARENT;
+        private int[] mColors = new int[] {Color.BLACK};
+        private boolean mShowArrow;
+        private boolean mSpriteAtlasEnabled;
+        private int mFrameRate = FrameRateLimiter.FRAME_RATE_DEFAULT;
+        private boolean mFrameStatsEnabled;
+        private boolean mPerceptualColorBlending;
+        private boolean mDeterminate;
+        private float mProgress;
+        /** Set once the animation was moved to a given time, which only the fallback can do. */
+        private boolean mSeeked;
+        private TimeSource mTimeSource;
+
+        @Override
+        public Drawable createDrawable(Context context) {
+            mContext = context;
+            setUseFallback(needsFallback());
+            return getDrawable();
+        }
+
+        @Override
+        public Drawable getDrawable() {
+            return mUseFallback ? mFallback.getDrawable() : mDrawable;
+        }
+
+        @Override
+        public void setSize(int size) {
+            mSize = size;
+            mDiameter = 0;
+            if (mUseFallback) {
+                mFallback.setSize(size);
+                setUseFallback(needsFallback());
+            } else {
+                createVector();
+            }
+        }
+
+        /**
+         * The vector drawable only comes in the two sizes, so any diameter is drawn by the
+         * fallback engine.
+         */
+        @Override
+        public void setDiameter(float diameter) {
+            mDiameter = diameter;
+            setUseFallback(needsFallback());
+            if (mUseFallback) {
+                mFallback.setDiameter(diameter);
+            }
+        }
+
+        @Override
+        public void setBackgroundColor(int color) {
+            mBackgroundColor = color;
+            if (mUseFallback) {
+                mFallback.setBackgroundColor(color);
+            } else {
+                mBackground.getPaint().setColor(color);
+                mDrawable.invalidateSelf();
+            }
+        }
+
+        @Override
+        public void setColorSchemeColors(int[] colors) {
+            mColors = colors;
+            setUseFallback(needsFallback());
+            if (mUseFallback) {
+                mFallback.setColorSchemeColors(colors);
+            } else {
+                mVector.setTint(colors[0]);
+            }
+        }
+
+        @Override
+        public void stop() {
+            mRunning = false;
+            mPaused = false;
+            if (mUseFallback) {
+                mFallback.stop();
+            } else {
+                mVector.stop();
+            }
+        }
+
+        @Override
+        public void start() {
+            mRunning = true;
+            mPaused = false;
+            if (mUseFallback) {
+                mFallback.start();
+            } else {
+                mVector.start();
+            }
+        }
+
+        /**
+         * Stops the vector drawable, as the RenderThread keeps running its animators for a
+         * hidden or detached view. It can't be resumed where it stopped, so it starts over on
+         * {@link #resume()}.
+         */
+        @Override
+        public void pause() {
+            if (!mRunning || mPaused) {
+                return;
+            }
+            mPaused = true;
+            if (mUseFallback) {
+                mFallback.pause();
+            } else {
+                mVector.stop();
+            }
+        }
+
+        @Override
+        public void resume() {
+            if (!mRunning || !mPaused) {
+                return;
+            }
+            mPaused = false;
+            if (mUseFallback) {
+                mFallback.resume();
+            } else {
+                mVector.start();
+            }
+        }
+
+        /**
+         * Enabling the arrow switches to the fallback engine. The switch only affects the
+         * drawable returned by the next {@link #getDrawable()} call.
+         */
+        @Override
+        public void setArrowEnabled(boolean showArrow) {
+            mShowArrow = showArrow;
+            setUseFallback(needsFallback());
+            if (mUseFallback) {
+                mFallback.setArrowEnabled(showArrow);
+            }
+        }
+
+        /**
+         * Only applies to the fallback engine; the vector drawable is already drawn off the main
+         * thread.
+         */
+        @Override
+        public void setSpriteAtlasEnabled(boolean enabled) {
+            mSpriteAtlasEnabled = enabled;
+            if (mUseFallback) {
+                mFallback.setSpriteAtlasEnabled(enabled);
+            }
+        }
+
+        /**
+         * Only applies to the fallback engine; the vector drawable is animated by the platform at
+         * the display rate.
+         */
+        @Override
+        public void setFrameRate(int frameRate) {
+            mFrameRate = frameRate;
+            if (mUseFallback) {
+                mFallback.setFrameRate(frameRate);
+            }
+        }
+
+        /**
+         * Frames of the vector drawable are produced by the RenderThread and can't be observed,
+         * so only the fallback engine records statistics.
+         */
+        @Override
+        public void setFrameStatsEnabled(boolean enabled) {
+            mFrameStatsEnabled = enabled;
+            if (mUseFallback) {
+                mFallback.setFrameStatsEnabled(enabled);
+            }
+        }
+
+        @Override
+        public FrameStats getFrameStats() {
+            return mUseFallback ? mFallback.getFrameStats() : null;
+        }
+
+        /**
+         * Only applies to the fallback engine; the vector drawable shows a single color.
+         */
+        @Override
+        public void setPerceptualColorBlending(boolean perceptual) {
+            mPerceptualColorBlending = perceptual;
+            if (mUseFallback) {
+                mFallback.setPerceptualColorBlending(perceptual);
+            }
+        }
+
+        /**
+         * Showing progress switches to the fallback engine, like the arrow.
+         */
+        @Override
+        public void setProgress(float progress) {
+            mProgress = progress;
+            mDeterminate = true;
+            if (mUseFallback) {
+                mFallback.setProgress(progress);
+            } else {
+                setUseFallback(true);
+            }
+        }
+
+        /**
+         * Going back to spinning switches back to the vector drawable unless the arrow is
+         * enabled, so the determinate arc is not closed gradually in that case.
+         */
+        @Override
+        public void setIndeterminate(boolean indeterminate) {
+            mDeterminate = !indeterminate;
+            if (mUseFallback) {
+                mFallback.setIndeterminate(indeterminate);
+            }
+            setUseFallback(needsFallback());
+        }
+
+        /**
+         * The vector drawable can't be moved to a given time, so seeking switches to the fallback
+         * engine for good.
+         */
+        @Override
+        public void setAnimationTime(long elapsedMillis) {
+            mSeeked = true;
+            setUseFallback(true);
+            mFallback.setAnimationTime(elapsedMillis);
+        }
+
+        /**
+         * A clock switches to the fallback engine, as the vector drawable follows the time of
+         * the RenderThread.
+         */
+        @Override
+        public void setTimeSource(TimeSource timeSource) {
+            mTimeSource = timeSource;
+            if (mUseFallback) {
+                mFallback.setTimeSource(timeSource);
+            }
+            setUseFallback(needsFallback());
+        }
+
+        private boolean needsFallback() {
+            return mShowArrow || mDeterminate || mSeeked || mTimeSource != null || mDiameter > 0
+                    || !isSingleColor(mColors) || !SUPPORTED;
+        }
+
+        private static boolean isSingleColor(int[] colors) {
+            for (int color : colors) {
+                if (color != colors[0]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setUseFallback(boolean useFallback) {
+            if (mDrawable != null || mFallback.getDrawable() != null) {
+                if (useFallback == mUseFallback) {
+                    return;
+                }
+                if (mRunning) {
+                    // Hand the animation over to the engine that takes over.
+                    if (mUseFallback) {
+                        mFallback.stop();
+                    } else {
+                        mVector.stop();
+                    }
+                }
+            }
+            mUseFallback = useFallback;
+            if (useFallback) {
+                if (mFallback.getDrawable() == null) {
+                    mFallback.createDrawable(mContext);
+                }
+                mFallback.setSize(mSize);
+                if (mDiameter > 0) {
+                    mFallback.setDiameter(mDiameter);
+                }
+                mFallback.setBackgroundColor(mBackgroundColor);
+                mFallback.setColorSchemeColors(mColors);
+                mFallback.setArrowEnabled(mShowArrow);
+                mFallback.setSpriteAtlasEnabled(mSpriteAtlasEnabled);
+                mFallback.setFrameRate(mFrameRate);
+                mFallback.setFrameStatsEnabled(mFrameStatsEnabled);
+                mFallback.setPerceptualColorBlending(mPerceptualColorBlending);
+                mFallback.setTimeSource(mTimeSource);
+                if (mDeterminate) {
+                    mFallback.setProgress(mProgress);
+                } else {
+                    mFallback.setIndeterminate(true);
+                }
+                if (mRunning) {
+                    mFallback.start();
+                    if (mPaused) {
+                        mFallback.pause();
+                    }
+                }
+            } else {
+                createVector();
+            }
+        }
+
+        private void createVector() {
+            if (mVector != null) {
+                mVector.stop();
+            }
+            final boolean large = mSize == CircularProgressDrawable.LARGE;
+            mVector = (AnimatedVectorDrawable) mContext.getResources().getDrawable(large
+                    ? R.drawable.clv_spinner_vector_large : R.drawable.clv_spinner_vector,
+                    mContext.getTheme());
+            mVector.setTint(mColors[0]);
+            mBackground = new ShapeDrawable(new OvalShape());
+            mBackground.getPaint().setColor(mBackgroundColor);
+            mDrawable = new LayerDrawable(new Drawable[] {mBackground, mVector});
+            final int inset = (int) (mContext.getResources().getDisplayMetrics().density
+                    * (large ? BACKGROUND_INSET_LARGE : BACKGROUND_INSET));
+            mDrawable.setLayerInset(0, inset, inset, inset, inset);
+            if (mRunning && !mPaused) {
+                mVector.start();
+            }
+        }
     }
 }
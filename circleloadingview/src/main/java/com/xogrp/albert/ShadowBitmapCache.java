@@ -0,0 +1,89 @@
+package com.xogrp.albert;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of the pre-Lollipop disc shadow of {@link CircleLoadingView}.
+ *
+ * <p>{@link Paint#setShadowLayer(float, float, float, int)} on shapes only renders in software,
+ * which used to force the whole view, spinner included, onto a software layer. Instead the disc
+ * and its shadow are rendered once into a bitmap on a software canvas and the view just draws
+ * that bitmap, so it stays hardware accelerated.
+ *
+ * <p>Bitmaps are keyed by diameter, shadow radius, shadow color and background color.
+ */
+final class ShadowBitmapCache {
+
+    /** Color of the fill shadow around the disc. */
+    static final int FILL_SHADOW_COLOR = 0x3D000000;
+
+    /**
+     * Shadow radius and offsets in dp of the standard sizes. Other sizes scale the radius, see
+     * {@link SpinnerMetrics#mShadowInset}, and the offsets along with it.
+     */
+    static final float SHADOW_RADIUS = 3.5f;
+    static final float X_OFFSET = 0f;
+    static final float Y_OFFSET = 1.75f;
+
+    /** Upper bound of the cached bitmaps in bytes. */
+    private static final int MAX_SIZE = 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sCache = new LruCache<String, Bitmap>(MAX_SIZE) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    private ShadowBitmapCache() {
+    }
+
+    /**
+     * Returns the shadowed disc, rendering it on first use. The bitmap is centered on the disc
+     * and extends by the shadow radius on each side.
+     *
+     * @param diameter diameter of the disc in pixels
+     * @param shadowRadius shadow radius in pixels, the offsets are scaled along with it
+     * @param shadowColor color of the key shadow cast by the disc
+     * @param backgroundColor color of the disc
+     */
+    static Bitmap obtain(int diameter, int shadowRadius, int shadowColor, int backgroundColor) {
+        final String key = diameter + ":" + shadowRadius + ":" + shadowColor + ":"
+                + backgroundColor;
+        Bitmap bitmap = sCache.get(key);
+        if (bitmap == null) {
+            bitmap = render(diameter, shadowRadius, shadowColor, backgroundColor);
+            sCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private static Bitmap render(int diameter, int shadowRadius, int shadowColor,
+            int backgroundColor) {
+        final int shadowXOffset = (int) (shadowRadius * X_OFFSET / SHADOW_RADIUS);
+        final int shadowYOffset = (int) (shadowRadius * Y_OFFSET / SHADOW_RADIUS);
+        final int size = diameter + shadowRadius * 2;
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final float center = size / 2f;
+        final float radius = diameter / 2f;
+
+        final Paint shadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        shadowPaint.setShader(new RadialGradient(center, center, radius + shadowRadius,
+                new int[] {FILL_SHADOW_COLOR, Color.TRANSPARENT},
+                new float[] {radius / (radius + shadowRadius), 1f}, Shader.TileMode.CLAMP));
+        canvas.drawCircle(center, center, radius + shadowRadius, shadowPaint);
+
+        final Paint discPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        discPaint.setColor(backgroundColor);
+        discPaint.setShadowLayer(shadowRadius, shadowXOffset, shadowYOffset, shadowColor);
+        canvas.drawCircle(center, center, radius, discPaint);
+        return bitmap;
+    }
+}
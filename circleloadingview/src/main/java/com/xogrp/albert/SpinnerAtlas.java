@@ -0,0 +1,240 @@
+package com.xogrp.albert;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.LruCache;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pre-rendered frames of the circular spinner arc, played back with
+ * {@link Canvas#drawBitmap(Bitmap, Rect, RectF, Paint)} instead of stroking the arc and filling
+ * the arrow on every frame.
+ *
+ * <p>Within a cycle the drawn shape only depends on the sweep of the arc: the start angle and
+ * the group rotation are a rotation of the canvas, and the color is applied by the paint. So the
+ * atlas holds up to {@link #FRAME_COUNT} sweeps from 0 to {@link SpinnerGeometry#MAX_PROGRESS_ARC},
+ * each starting at 0 degrees, as an {@link Bitmap.Config#ALPHA_8} mask that is tinted with the
+ * current color when drawn. One atlas therefore covers every cycle and every color scheme.
+ *
+ * <p>Atlases are shared by all drawables with the same geometry and kept in a process-wide LRU
+ * bounded by {@link #MAX_CACHE_SIZE} bytes. A single atlas is held to {@link #MAX_ATLAS_SIZE}
+ * bytes, with fewer sweeps for a large spinner; a spinner too large for even
+ * {@link #MIN_FRAME_COUNT} sweeps gets no atlas and is drawn directly. Main thread only.
+ */
+final class SpinnerAtlas {
+
+    /** Number of sweeps rendered, about 3 degrees apart. */
+    static final int FRAME_COUNT = 96;
+
+    /** Fewest sweeps worth an atlas, about 9 degrees apart. */
+    static final int MIN_FRAME_COUNT = 32;
+
+    /** Upper bound in bytes of the atlases kept by the cache. */
+    static final int MAX_CACHE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Upper bound in bytes of a single atlas, so that the cache always holds the atlases of a
+     * spinner and its arrow animation instead of evicting them as soon as they are put.
+     */
+    static final int MAX_ATLAS_SIZE = MAX_CACHE_SIZE / 4;
+
+    private static final float MAX_SWEEP_ANGLE = SpinnerGeometry.MAX_PROGRESS_ARC * 360;
+
+    private static final LruCache<String, SpinnerAtlas> sCache =
+            new LruCache<String, SpinnerAtlas>(MAX_CACHE_SIZE) {
+                @Override
+                protected int sizeOf(String key, SpinnerAtlas value) {
+                    return value.getByteCount();
+                }
+
+                @Override
+                protected void entryRemoved(boolean evicted, String key, SpinnerAtlas oldValue,
+                        SpinnerAtlas newValue) {
+                    // A drawable may still draw from it, so its memory is reported until then.
+                    sEvicted.add(new WeakReference<>(oldValue));
+                }
+            };
+
+    /** Atlases dropped by the cache that may still be held by a drawable. */
+    private static final List<WeakReference<SpinnerAtlas>> sEvicted = new ArrayList<>();
+
+    private final Bitmap mBitmap;
+    private final int mCellSize;
+    private final int mFrameCount;
+    private final int mColumns;
+    private final Rect mSrc = new Rect();
+    private final RectF mDst = new RectF();
+
+    /**
+     * Returns the shared atlas for the given geometry, rendering it on first use.
+     *
+     * @param arcRadius radius in pixels of the circle the arc traces
+     * @param strokeWidth stroke width of the arc in pixels
+     * @param strokeCap stroke cap of the arc
+     * @param arrowWidth scaled width of the arrow baseline in pixels, or 0 for no arrow
+     * @param arrowHeight scaled distance from tip of the arrow to its baseline in pixels
+     * @return the atlas, or {@code null} if it would exceed {@link #MAX_ATLAS_SIZE} bytes and the
+     *         arc has to be drawn directly
+     */
+    static SpinnerAtlas obtain(float arcRadius, float strokeWidth, Paint.Cap strokeCap,
+            float arrowWidth, float arrowHeight) {
+        final String key = arcRadius + ":" + strokeWidth + ":" + strokeCap.ordinal() + ":"
+                + arrowWidth + ":" + arrowHeight;
+        SpinnerAtlas atlas = sCache.get(key);
+        if (atlas == null) {
+            final int cellSize = getCellSize(arcRadius, strokeWidth, arrowWidth, arrowHeight);
+            final int frameCount = getFrameCount(cellSize);
+            if (frameCount < MIN_FRAME_COUNT) {
+                return null;
+            }
+            atlas = new SpinnerAtlas(cellSize, frameCount, arcRadius, strokeWidth, strokeCap,
+                    arrowWidth, arrowHeight);
+            sCache.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Returns the memory in bytes held by the atlases in the cache and by those evicted from it
+     * that have not been garbage collected yet.
+     */
+    static int getMemoryUsage() {
+        int size = sCache.size();
+        for (Iterator<WeakReference<SpinnerAtlas>> it = sEvicted.iterator(); it.hasNext(); ) {
+            final SpinnerAtlas atlas = it.next().get();
+            if (atlas == null) {
+                it.remove();
+            } else {
+                size += atlas.getByteCount();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the side of the square cell of a frame, large enough for the stroke, its cap and
+     * the arrow at any rotation, plus a pixel of antialiasing on each side.
+     */
+    private static int getCellSize(float arcRadius, float strokeWidth, float arrowWidth,
+            float arrowHeight) {
+        final double extentX = arcRadius + Math.max(strokeWidth, arrowWidth) / 2;
+        final double extentY = strokeWidth / 2 + arrowHeight;
+        return (int) Math.ceil(2 * Math.hypot(extentX, extentY)) + 2;
+    }
+
+    /**
+     * Returns the most frames up to {@link #FRAME_COUNT} whose cells fit in
+     * {@link #MAX_ATLAS_SIZE} bytes.
+     */
+    private static int getFrameCount(int cellSize) {
+        final long cellBytes = (long) cellSize * cellSize;
+        for (int frameCount = FRAME_COUNT; frameCount >= MIN_FRAME_COUNT; frameCount--) {
+            final int columns = getColumns(frameCount);
+            final int rows = (frameCount + columns - 1) / columns;
+            if (columns * rows * cellBytes <= MAX_ATLAS_SIZE) {
+                return frameCount;
+            }
+        }
+        return 0;
+    }
+
+    private static int getColumns(int frameCount) {
+        return (int) Math.ceil(Math.sqrt(frameCount));
+    }
+
+    private SpinnerAtlas(int cellSize, int frameCount, float arcRadius, float strokeWidth,
+            Paint.Cap strokeCap, float arrowWidth, float arrowHeight) {
+        mCellSize = cellSize;
+        mFrameCount = frameCount;
+        mColumns = getColumns(frameCount);
+        final int rows = (frameCount + mColumns - 1) / mColumns;
+        mBitmap = Bitmap.createBitmap(mColumns * mCellSize, rows * mCellSize,
+                Bitmap.Config.ALPHA_8);
+        render(arcRadius, strokeWidth, strokeCap, arrowWidth, arrowHeight);
+    }
+
+    private void render(float arcRadius, float strokeWidth, Paint.Cap strokeCap,
+            float arrowWidth, float arrowHeight) {
+        final Canvas canvas = new Canvas(mBitmap);
+        final Paint arcPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        arcPaint.setStyle(Paint.Style.STROKE);
+        arcPaint.setStrokeWidth(strokeWidth);
+        arcPaint.setStrokeCap(strokeCap);
+        final Paint arrowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        arrowPaint.setStyle(Paint.Style.FILL);
+        final RectF arcBounds = new RectF();
+        final Path arrow = new Path();
+        arrow.setFillType(Path.FillType.EVEN_ODD);
+        final float[] points = new float[6];
+        final float half = mCellSize / 2f;
+        for (int i = 0; i < mFrameCount; i++) {
+            final float left = (i % mColumns) * mCellSize;
+            final float top = (i / mColumns) * mCellSize;
+            final float centerX = left + half;
+            final float centerY = top + half;
+            final float sweepAngle = getSweepAngle(i);
+            canvas.save();
+            canvas.clipRect((int) left, (int) top, (int) left + mCellSize, (int) top + mCellSize);
+            arcBounds.set(centerX - arcRadius, centerY - arcRadius, centerX + arcRadius,
+                    centerY + arcRadius);
+            canvas.drawArc(arcBounds, 0, sweepAngle, false, arcPaint);
+            if (arrowWidth > 0) {
+                // Same placement as CircularProgressDrawable.Ring#drawTriangle, relative to the
+                // start of the arc.
+                SpinnerGeometry.computeArrow(arrowWidth, arrowHeight, 1f,
+                        arcRadius + centerX - arrowWidth / 2, centerY + strokeWidth / 2, points);
+                arrow.reset();
+                arrow.moveTo(points[0], points[1]);
+                arrow.lineTo(points[2], points[3]);
+                arrow.lineTo(points[4], points[5]);
+                arrow.close();
+                canvas.rotate(sweepAngle, centerX, centerY);
+                canvas.drawPath(arrow, arrowPaint);
+            }
+            canvas.restore();
+        }
+    }
+
+    private float getSweepAngle(int frame) {
+        return MAX_SWEEP_ANGLE * frame / (mFrameCount - 1);
+    }
+
+    /**
+     * Returns {@code true} if the atlas has a frame for the given sweep.
+     */
+    static boolean covers(float sweepAngle) {
+        return sweepAngle >= 0 && sweepAngle <= MAX_SWEEP_ANGLE;
+    }
+
+    /**
+     * Draws the frame closest to the given sweep, starting at 0 degrees around the given center.
+     * The caller rotates the canvas to the start angle of the arc.
+     *
+     * @param paint paint whose color tints the frame
+     */
+    void draw(Canvas canvas, float sweepAngle, float centerX, float centerY, Paint paint) {
+        final int frame = Math.min(mFrameCount - 1,
+                Math.max(0, Math.round(sweepAngle / MAX_SWEEP_ANGLE * (mFrameCount - 1))));
+        final int left = (frame % mColumns) * mCellSize;
+        final int top = (frame / mColumns) * mCellSize;
+        mSrc.set(left, top, left + mCellSize, top + mCellSize);
+        final float half = mCellSize / 2f;
+        mDst.set(centerX - half, centerY - half, centerX + half, centerY + half);
+        canvas.drawBitmap(mBitmap, mSrc, mDst, paint);
+    }
+
+    /**
+     * Returns the memory in bytes used by this atlas.
+     */
+    int getByteCount() {
+        return mBitmap.getByteCount();
+    }
+}
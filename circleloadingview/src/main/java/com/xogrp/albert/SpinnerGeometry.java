@@ -0,0 +1,396 @@
+package com.xogrp.albert;
+
+/**
+ * Pure-Java math behind both spinner styles.
+ *
+ * <p>Everything here works on primitives and {@link SpinnerState}, with no android.graphics
+ * dependency, so the per-frame path can be profiled and tuned on a plain JVM.
+ * {@link CircularProgressDrawable} and {@link MaterialProgressDrawable} only keep the timing and
+ * the drawing and delegate the motion, colors and arrow layout to this class.
+ */
+final class SpinnerGeometry {
+
+    /** Motion of {@link CircularProgressDrawable}. */
+    static final int STYLE_CIRCULAR = 0;
+    /** Motion of {@link MaterialProgressDrawable}. */
+    static final int STYLE_MATERIAL = 1;
+
+    /** The duration of a single progress spin in milliseconds. */
+    static final int ANIMATION_DURATION = 1332;
+
+    /** Maximum length of the progress arc during the animation. */
+    static final float MAX_PROGRESS_ARC = .8f;
+    /** Minimum length of the progress arc of the circular style. */
+    static final float CIRCULAR_MIN_PROGRESS_ARC = .01f;
+
+    /** Ring rotation of the circular style per cycle, completing the arc to a full circle. */
+    static final float CIRCULAR_RING_ROTATION =
+            1f - (MAX_PROGRESS_ARC - CIRCULAR_MIN_PROGRESS_ARC);
+    /** Ring rotation of the material style per cycle. */
+    static final float MATERIAL_RING_ROTATION = .25f;
+
+    /** Group rotation in degrees per cycle. */
+    static final float GROUP_FULL_ROTATION = 1080f / 5f;
+    /** The number of points in the progress "star" of the material style. */
+    static final float NUM_POINTS = 5f;
+
+    /** Point of the cycle at which the arc stops growing and starts shrinking. */
+    static final float SHRINK_OFFSET = 0.5f;
+    /** Point of the cycle at which the transition to the next color starts. */
+    static final float COLOR_CHANGE_OFFSET = 0.75f;
+
+    /** Rotation in degrees the material arrow trails the end of the arc by. */
+    static final float MATERIAL_ARROW_OFFSET_ANGLE = 5f;
+
+    /** Duration in milliseconds of the morph from the spinning arc to a determinate one. */
+    static final int MORPH_DURATION = 500;
+
+    /** Time constant in milliseconds of the determinate arc following the latest progress. */
+    static final float PROGRESS_SMOOTHING = 80f;
+
+    /** Distance from the latest progress below which the determinate arc snaps to it. */
+    private static final float PROGRESS_SNAP = 0.001f;
+
+    /**
+     * Samples of the fast-out-slow-in curve, the same table FastOutSlowInInterpolator is built
+     * on. Generated from the cubic bezier (0.4, 0) (0.2, 1) and rounded to four decimals.
+     */
+    private static final float[] FAST_OUT_SLOW_IN = bakeCubicBezier(0.4f, 0f, 0.2f, 1f, 201);
+    private static final float FAST_OUT_SLOW_IN_STEP = 1f / (FAST_OUT_SLOW_IN.length - 1);
+
+    private SpinnerGeometry() {
+    }
+
+    /**
+     * Pure-Java equivalent of FastOutSlowInInterpolator.
+     */
+    static float fastOutSlowIn(float input) {
+        if (input >= 1f) {
+            return 1f;
+        }
+        if (input <= 0f) {
+            return 0f;
+        }
+        final float[] values = FAST_OUT_SLOW_IN;
+        final int position = Math.min((int) (input * (values.length - 1)), values.length - 2);
+        final float weight = (input - position * FAST_OUT_SLOW_IN_STEP) / FAST_OUT_SLOW_IN_STEP;
+        return values[position] + weight * (values[position + 1] - values[position]);
+    }
+
+    /**
+     * Returns the minimum arc length of the material style, which matches the stroke width.
+     */
+    static float getMaterialMinProgressArc(float strokeWidth, double centerRadius) {
+        return (float) Math.toRadians(strokeWidth / (2 * Math.PI * centerRadius));
+    }
+
+    /**
+     * Computes trims, ring rotation, group rotation and color for a point of the current cycle.
+     *
+     * @param style {@link #STYLE_CIRCULAR} or {@link #STYLE_MATERIAL}
+     * @param interpolatedTime point of the cycle from [0..1]
+     * @param minProgressArc minimum arc length, {@link #CIRCULAR_MIN_PROGRESS_ARC} for circular
+     */
+    static void computeFrame(int style, float interpolatedTime, float minProgressArc,
+            SpinnerState state) {
+        computeColor(interpolatedTime, state);
+        if (state.mFinishing) {
+            computeFinishFrame(interpolatedTime, minProgressArc, state);
+        } else if (style == STYLE_CIRCULAR) {
+            computeCircularTrims(interpolatedTime, state);
+        } else {
+            computeMaterialTrims(interpolatedTime, minProgressArc, state);
+        }
+    }
+
+    private static void computeCircularTrims(float interpolatedTime, SpinnerState state) {
+        final float arc = MAX_PROGRESS_ARC - CIRCULAR_MIN_PROGRESS_ARC;
+        if (interpolatedTime < SHRINK_OFFSET) { // Expansion occurs on first half of animation
+            final float scaledTime = interpolatedTime / SHRINK_OFFSET;
+            state.mStartTrim = state.mStartingStartTrim;
+            state.mEndTrim = state.mStartTrim + (arc * fastOutSlowIn(scaledTime)
+                    + CIRCULAR_MIN_PROGRESS_ARC);
+        } else { // Shrinking occurs on second half of animation
+            final float scaledTime = (interpolatedTime - SHRINK_OFFSET) / (1f - SHRINK_OFFSET);
+            state.mEndTrim = state.mStartingStartTrim + arc;
+            state.mStartTrim = state.mEndTrim - (arc * (1f - fastOutSlowIn(scaledTime))
+                    + CIRCULAR_MIN_PROGRESS_ARC);
+        }
+        state.mRotation = state.mStartingRotation + (CIRCULAR_RING_ROTATION * interpolatedTime);
+        state.mGroupRotation = GROUP_FULL_ROTATION * (interpolatedTime + state.mRotationCount);
+    }
+
+    private static void computeMaterialTrims(float interpolatedTime, float minProgressArc,
+            SpinnerState state) {
+        final float arc = MAX_PROGRESS_ARC - minProgressArc;
+        // Moving the start trim only occurs in the first 50% of a single ring animation
+        final float startTime = Math.min(1f, interpolatedTime / SHRINK_OFFSET);
+        state.mStartTrim = state.mStartingStartTrim + arc * fastOutSlowIn(startTime);
+        // Moving the end trim starts after 50% of a single ring animation completes
+        if (interpolatedTime > SHRINK_OFFSET) {
+            final float scaledTime = (interpolatedTime - SHRINK_OFFSET) / (1f - SHRINK_OFFSET);
+            state.mEndTrim = state.mStartingEndTrim + arc * fastOutSlowIn(scaledTime);
+        } else {
+            state.mEndTrim = state.mStartingEndTrim;
+        }
+        state.mRotation = state.mStartingRotation + (MATERIAL_RING_ROTATION * interpolatedTime);
+        state.mGroupRotation = GROUP_FULL_ROTATION * (interpolatedTime + state.mRotationCount);
+    }
+
+    /**
+     * Shrinks an already visible arc back down and completes a full rotation before the
+     * spinner starts. The group rotation is left untouched.
+     */
+    private static void computeFinishFrame(float interpolatedTime, float minProgressArc,
+            SpinnerState state) {
+        // Rotation goes between [0..1].
+        final float targetRotation =
+                (float) (Math.floor(state.mStartingRotation / MAX_PROGRESS_ARC) + 1f);
+        state.mStartTrim = state.mStartingStartTrim + (state.mStartingEndTrim - minProgressArc
+                - state.mStartingStartTrim) * interpolatedTime;
+        state.mEndTrim = state.mStartingEndTrim;
+        state.mRotation = state.mStartingRotation
+                + ((targetRotation - state.mStartingRotation) * interpolatedTime);
+    }
+
+    /**
+     * Updates the current color. Within the last 25% of a cycle it is a translation from the
+     * starting color to the next color, looked up in the color table of the state.
+     */
+    static void computeColor(float interpolatedTime, SpinnerState state) {
+        if (interpolatedTime > COLOR_CHANGE_OFFSET) {
+            // scale the interpolatedTime so that the full
+            // transformation from 0 - 1 takes place in the
+            // remaining time
+            state.mCurrentColor = state.mColorTable.getColor(state.mColorIndex,
+                    (interpolatedTime - COLOR_CHANGE_OFFSET) / (1f - COLOR_CHANGE_OFFSET));
+        } else {
+            state.mCurrentColor = state.getStartingColor();
+        }
+    }
+
+    /**
+     * Prepares the state for an animation starting at elapsed time 0, for
+     * {@link #computeFrameAt(int, long, float, SpinnerKeyframes, SpinnerState)}. An arc that is
+     * already visible, from a gesture or a determinate progress, is closed during the first half
+     * cycle before the spinner starts.
+     */
+    static void beginAnimation(SpinnerState state) {
+        if (state.mEndTrim != state.mStartTrim) {
+            state.mCloseArc = true;
+            state.mOriginStartTrim = state.mStartTrim;
+            state.mOriginEndTrim = state.mEndTrim;
+            state.mOriginRotation = state.mRotation;
+            state.mOriginGroupRotation = state.mGroupRotation;
+            state.mOriginColorIndex = state.mColorIndex;
+        } else {
+            state.mCloseArc = false;
+            state.mOriginColorIndex = 0;
+            state.setColorIndex(0);
+            state.resetOriginals();
+        }
+        state.mRotationCount = 0;
+        state.mFinishing = false;
+    }
+
+    /**
+     * Computes the frame at a point of the animation prepared by
+     * {@link #beginAnimation(SpinnerState)}. The frame only depends on the elapsed time, not on
+     * the frames computed before, so any point, hours ahead or behind, costs the same. Trims and
+     * rotations are kept within a turn of their starting values, which keeps their precision.
+     *
+     * @param style {@link #STYLE_CIRCULAR} or {@link #STYLE_MATERIAL}
+     * @param elapsedMillis time since the animation started
+     * @param minProgressArc minimum arc length, {@link #CIRCULAR_MIN_PROGRESS_ARC} for circular
+     * @param keyframes baked motion of the style, or {@code null} to evaluate it live
+     * @return {@code true} while the arc visible at the start is being closed
+     */
+    static boolean computeFrameAt(int style, long elapsedMillis, float minProgressArc,
+            SpinnerKeyframes keyframes, SpinnerState state) {
+        long time = Math.max(0, elapsedMillis);
+        float baseStartTrim = 0f;
+        float baseEndTrim = 0f;
+        float baseRotation = 0f;
+        int baseColorIndex = 0;
+        if (state.mCloseArc) {
+            final long closeDuration = ANIMATION_DURATION / 2;
+            if (time < closeDuration) {
+                state.mStartingStartTrim = state.mOriginStartTrim;
+                state.mStartingEndTrim = state.mOriginEndTrim;
+                state.mStartingRotation = state.mOriginRotation;
+                state.mGroupRotation = state.mOriginGroupRotation;
+                state.mRotationCount = 0;
+                state.mFinishing = true;
+                state.setColorIndex(state.mOriginColorIndex);
+                computeFrame(style, time / (float) closeDuration, minProgressArc, keyframes,
+                        state);
+                return true;
+            }
+            // Where closing the arc ends, see computeFinishFrame().
+            time -= closeDuration;
+            baseStartTrim = state.mOriginEndTrim - minProgressArc;
+            baseEndTrim = state.mOriginEndTrim;
+            baseRotation = (float) (Math.floor(state.mOriginRotation / MAX_PROGRESS_ARC) + 1f);
+            baseColorIndex = state.mOriginColorIndex + 1;
+        }
+        final long cycles = time / ANIMATION_DURATION;
+        final float interpolatedTime = (time - cycles * ANIMATION_DURATION)
+                / (float) ANIMATION_DURATION;
+        // Each cycle moves both trims and the ring rotation by a fixed amount, since the next
+        // cycle starts where the arc of this one ends.
+        final double trimStep;
+        final double rotationStep;
+        if (style == STYLE_CIRCULAR) {
+            trimStep = MAX_PROGRESS_ARC - 2 * CIRCULAR_MIN_PROGRESS_ARC;
+            rotationStep = CIRCULAR_RING_ROTATION;
+        } else {
+            trimStep = MAX_PROGRESS_ARC - minProgressArc;
+            rotationStep = MATERIAL_RING_ROTATION;
+        }
+        final float trimOffset = fraction(cycles * trimStep);
+        state.mStartingStartTrim = baseStartTrim + trimOffset;
+        state.mStartingEndTrim = baseEndTrim + trimOffset;
+        state.mStartingRotation = baseRotation + fraction(cycles * rotationStep);
+        // Five cycles of group rotation add up to whole turns.
+        state.mRotationCount = cycles % (long) NUM_POINTS;
+        state.mFinishing = false;
+        state.setColorIndex((int) ((baseColorIndex + cycles) % state.mColors.length));
+        computeFrame(style, interpolatedTime, minProgressArc, keyframes, state);
+        return false;
+    }
+
+    private static void computeFrame(int style, float interpolatedTime, float minProgressArc,
+            SpinnerKeyframes keyframes, SpinnerState state) {
+        if (keyframes != null) {
+            keyframes.computeFrame(interpolatedTime, state);
+        } else {
+            computeFrame(style, interpolatedTime, minProgressArc, state);
+        }
+    }
+
+    private static float fraction(double value) {
+        return (float) (value - Math.floor(value));
+    }
+
+    /**
+     * Captures the current arc as the start of a morph into a determinate arc, which starts at
+     * the top of the ring. The arc only moves forward: its start goes to the next top position
+     * ahead of it and the group rotation to the next full turn.
+     */
+    static void startDeterminateMorph(SpinnerState state) {
+        state.storeOriginals();
+        state.mStartingGroupRotation = state.mGroupRotation;
+        // The top of the ring is at -90 degrees, a quarter turn back.
+        state.mTargetRotation = (float) Math.ceil(state.mStartTrim + state.mRotation + .25f)
+                - .25f;
+        state.mTargetGroupRotation = (float) Math.ceil(state.mGroupRotation / 360f) * 360f;
+        state.mFinishing = false;
+    }
+
+    /**
+     * Computes a frame of the morph started by {@link #startDeterminateMorph(SpinnerState)}.
+     *
+     * @param morphFraction point of the morph from [0..1]; 1 once it is complete
+     * @param progress fraction of the ring the determinate arc covers, from [0..1]
+     */
+    static void computeDeterminateFrame(float morphFraction, float progress,
+            SpinnerState state) {
+        final float fraction = fastOutSlowIn(morphFraction);
+        final float startingSweep = state.mStartingEndTrim - state.mStartingStartTrim;
+        state.mStartTrim = state.mStartingStartTrim * (1f - fraction);
+        state.mEndTrim = state.mStartTrim + startingSweep + (progress - startingSweep) * fraction;
+        state.mRotation = state.mStartingRotation
+                + (state.mTargetRotation - state.mStartingRotation) * fraction;
+        state.mGroupRotation = state.mStartingGroupRotation
+                + (state.mTargetGroupRotation - state.mStartingGroupRotation) * fraction;
+    }
+
+    /**
+     * Moves the progress shown by a determinate arc toward the latest one, easing out so that
+     * bursts of updates produce smooth motion.
+     *
+     * @param elapsedMillis time since the shown progress was last updated
+     * @return the progress to show
+     */
+    static float approachProgress(float shown, float target, long elapsedMillis) {
+        if (elapsedMillis <= 0) {
+            return shown;
+        }
+        final float next = target
+                + (shown - target) * (float) Math.exp(-elapsedMillis / PROGRESS_SMOOTHING);
+        return Math.abs(next - target) < PROGRESS_SNAP ? target : next;
+    }
+
+    // Adapted from ArgbEvaluator.java
+    static int evaluateColorChange(float fraction, int startValue, int endValue) {
+        int startA = (startValue >> 24) & 0xff;
+        int startR = (startValue >> 16) & 0xff;
+        int startG = (startValue >> 8) & 0xff;
+        int startB = startValue & 0xff;
+
+        int endA = (endValue >> 24) & 0xff;
+        int endR = (endValue >> 16) & 0xff;
+        int endG = (endValue >> 8) & 0xff;
+        int endB = endValue & 0xff;
+
+        return (startA + (int) (fraction * (endA - startA))) << 24
+                | (startR + (int) (fraction * (endR - startR))) << 16
+                | (startG + (int) (fraction * (endG - startG))) << 8
+                | (startB + (int) (fraction * (endB - startB)));
+    }
+
+    /**
+     * Computes the three vertices of the arrowhead, before it is rotated to the end of the arc.
+     *
+     * @param width width of the baseline of the arrow
+     * @param height distance from tip of the arrow to its baseline
+     * @param scale scale applied to both width and height
+     * @param x horizontal position of the first baseline vertex
+     * @param y vertical position of the baseline
+     * @param out receives x0, y0, x1, y1, x2, y2
+     */
+    static void computeArrow(float width, float height, float scale, float x, float y,
+            float[] out) {
+        out[0] = x;
+        out[1] = y;
+        out[2] = x + width * scale;
+        out[3] = y;
+        out[4] = x + width * scale / 2;
+        out[5] = y + height * scale;
+    }
+
+    /**
+     * Returns the rotation in degrees around the center that places the arrowhead at the end of
+     * the arc, before the group rotation is applied.
+     */
+    static float getArrowRotation(int style, SpinnerState state) {
+        final float endAngle = state.getStartAngle() + state.getSweepAngle();
+        return style == STYLE_MATERIAL ? endAngle - MATERIAL_ARROW_OFFSET_ANGLE : endAngle;
+    }
+
+    private static float[] bakeCubicBezier(float x1, float y1, float x2, float y2, int count) {
+        final float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            final double x = i / (double) (count - 1);
+            // Solve x(u) = x by bisection; x(u) is monotonic for these control points.
+            double low = 0;
+            double high = 1;
+            double u = x;
+            for (int iteration = 0; iteration < 40; iteration++) {
+                u = (low + high) / 2;
+                if (cubic(u, x1, x2) < x) {
+                    low = u;
+                } else {
+                    high = u;
+                }
+            }
+            values[i] = Math.round(cubic(u, y1, y2) * 10000) / 10000f;
+        }
+        return values;
+    }
+
+    private static double cubic(double u, float p1, float p2) {
+        final double inverse = 1 - u;
+        return 3 * inverse * inverse * u * p1 + 3 * inverse * u * u * p2 + u * u * u;
+    }
+}
@@ -0,0 +1,366 @@
+package com.xogrp.albert;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Draws many spinner rings, for instance the placeholders of a grid skeleton screen, in a single
+ * {@link #draw(Canvas)} pass instead of one view per spinner.
+ *
+ * <p>All rings follow one animation driven by one {@link SpinnerTicker} callback, so they spin in
+ * step. Rings with the same colors and size form a batch that shares its paint and its color
+ * state; with {@link #setBatchingEnabled(boolean) batching} each batch is drawn as a single path.
+ * Rings are drawn without the arrow and without the disc of {@link CircleLoadingView}.
+ *
+ * <p>Ring centers are relative to the top left corner of the bounds. The drawable has no
+ * intrinsic size. Main thread only.
+ */
+public class SpinnerGroupDrawable extends Drawable implements Animatable,
+        SpinnerTicker.FrameCallback {
+
+    private static final long UNSET_START_TIME = -1;
+
+    private final float mDensity;
+    private final ArrayList<Batch> mBatches = new ArrayList<>();
+    /** Motion of every ring; colors are kept per batch. */
+    private final SpinnerState mState = new SpinnerState(new int[] {0});
+    private final SpinnerKeyframes mKeyframes = SpinnerKeyframes.obtain(
+            SpinnerGeometry.STYLE_CIRCULAR, SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC,
+            SpinnerKeyframes.DEFAULT_RESOLUTION);
+    private final FrameRateLimiter mFrameRateLimiter = new FrameRateLimiter();
+    /** Area covered by the rings, relative to the top left corner of the bounds. */
+    private final Rect mRingBounds = new Rect();
+    private final Rect mDirtyBounds = new Rect();
+    private final RectF mTempBounds = new RectF();
+
+    private int mSpinnerCount;
+    private boolean mBatching;
+    private boolean mPerceptualColors;
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;
+    private boolean mRunning;
+    /** Frame time at which the animation started. */
+    private long mStartTime = UNSET_START_TIME;
+    /** Number of cycles completed since the start, which selects the color of every batch. */
+    private int mCycle;
+
+    /**
+     * @param context context used to convert the ring dimensions to pixels
+     */
+    public SpinnerGroupDrawable(@NonNull Context context) {
+        mDensity = context.getResources().getDisplayMetrics().density;
+    }
+
+    /**
+     * Adds a ring.
+     *
+     * @param centerX horizontal center of the ring in pixels from the left of the bounds
+     * @param centerY vertical center of the ring in pixels from the top of the bounds
+     * @param size one of {@link CircleLoadingView#NORMAL} or {@link CircleLoadingView#LARGE}
+     * @param colors colors of the ring, used in sequence
+     */
+    public void addSpinner(float centerX, float centerY, @CircleLoadingView.Size int size,
+            @NonNull int... colors) {
+        if (colors.length == 0) {
+            throw new IllegalArgumentException("At least one color is required");
+        }
+        final boolean large = size == CircleLoadingView.LARGE;
+        final Batch batch = obtainBatch(colors, large);
+        batch.add(centerX, centerY);
+        mSpinnerCount++;
+        final int extent = (int) Math.ceil(batch.mArcRadius + batch.mPaint.getStrokeWidth() / 2)
+                + 1;
+        final int x = (int) centerX;
+        final int y = (int) centerY;
+        if (mSpinnerCount == 1) {
+            mRingBounds.set(x - extent, y - extent, x + extent + 1, y + extent + 1);
+        } else {
+            mRingBounds.union(x - extent, y - extent, x + extent + 1, y + extent + 1);
+        }
+        invalidateSelf();
+    }
+
+    private Batch obtainBatch(int[] colors, boolean large) {
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            final Batch batch = batches.get(i);
+            if (batch.mLarge == large && Arrays.equals(batch.mColorState.mColors, colors)) {
+                return batch;
+            }
+        }
+        final Batch batch = new Batch(colors.clone(), large, mDensity);
+        batch.mColorState.setPerceptualColors(mPerceptualColors);
+        batch.mColorState.setColorIndex(mCycle % colors.length);
+        batch.mPaint.setColorFilter(mColorFilter);
+        batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Removes every ring.
+     */
+    public void clearSpinners() {
+        mBatches.clear();
+        mSpinnerCount = 0;
+        invalidateSelf();
+        mRingBounds.setEmpty();
+    }
+
+    /**
+     * Returns the number of rings added since the last {@link #clearSpinners()}.
+     */
+    public int getSpinnerCount() {
+        return mSpinnerCount;
+    }
+
+    /**
+     * Draws all rings of the same colors and size as one path instead of one arc each. This
+     * saves draw calls for large groups, at the cost of building the path on every frame.
+     *
+     * @param enabled {@code true} to draw one path per batch, {@code false} by default
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        mBatching = enabled;
+    }
+
+    public boolean isBatchingEnabled() {
+        return mBatching;
+    }
+
+    /**
+     * Blends between consecutive colors in the OKLab color space instead of per channel.
+     *
+     * @param perceptual {@code true} to blend perceptually, {@code false} by default
+     */
+    public void setPerceptualColorBlending(boolean perceptual) {
+        mPerceptualColors = perceptual;
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            batches.get(i).mColorState.setPerceptualColors(perceptual);
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * Caps how often the running animation redraws. Skipped vsyncs don't change the timing of
+     * the animation.
+     *
+     * @param frameRate frames per second, {@link CircleLoadingView#FRAME_RATE_DISPLAY} to draw on
+     *                  every vsync or {@link CircleLoadingView#FRAME_RATE_DEFAULT} to follow the
+     *                  default of {@link CircleLoadingView#setDefaultFrameRate(int)}
+     */
+    public void setFrameRate(int frameRate) {
+        mFrameRateLimiter.setFrameRate(frameRate);
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        final Rect bounds = getBounds();
+        final float startAngle = mState.getStartAngle() + mState.mGroupRotation;
+        final float sweepAngle = mState.getSweepAngle();
+        final RectF arcBounds = mTempBounds;
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            final Batch batch = batches.get(i);
+            final Paint paint = batch.mPaint;
+            paint.setColor(batch.mColorState.mCurrentColor);
+            paint.setAlpha(mAlpha);
+            final float radius = batch.mArcRadius;
+            final float[] centers = batch.mCenters;
+            final Path path = mBatching ? batch.mPath : null;
+            if (path != null) {
+                path.rewind();
+            }
+            for (int j = 0, count = batch.mCount * 2; j < count; j += 2) {
+                final float centerX = bounds.left + centers[j];
+                final float centerY = bounds.top + centers[j + 1];
+                arcBounds.set(centerX - radius, centerY - radius, centerX + radius,
+                        centerY + radius);
+                if (path != null) {
+                    path.addArc(arcBounds, startAngle, sweepAngle);
+                } else {
+                    canvas.drawArc(arcBounds, startAngle, sweepAngle, false, paint);
+                }
+            }
+            if (path != null) {
+                canvas.drawPath(path, paint);
+            }
+        }
+    }
+
+    /**
+     * Limits the damage of every invalidation to the area covered by the rings.
+     */
+    @Override
+    public void invalidateSelf() {
+        final Rect bounds = getBounds();
+        mDirtyBounds.set(mRingBounds);
+        mDirtyBounds.offset(bounds.left, bounds.top);
+        super.invalidateSelf();
+    }
+
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return mDirtyBounds;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            batches.get(i).mPaint.setColorFilter(colorFilter);
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts the animation of every ring from the beginning of a cycle.
+     */
+    @Override
+    public void start() {
+        mState.resetOriginals();
+        SpinnerGeometry.beginAnimation(mState);
+        setCycle(0);
+        mStartTime = UNSET_START_TIME;
+        mFrameRateLimiter.reset();
+        mRunning = true;
+        SpinnerTicker.getInstance().register(this);
+    }
+
+    /**
+     * Stops the animation and hides the rings.
+     */
+    @Override
+    public void stop() {
+        mRunning = false;
+        SpinnerTicker.getInstance().unregister(this);
+        mState.mGroupRotation = 0;
+        mState.resetOriginals();
+        setCycle(0);
+        invalidateSelf();
+    }
+
+    @Override
+    public boolean doFrame(long frameTimeMillis) {
+        if (!mRunning) {
+            return false;
+        }
+        if (getCallback() == null) {
+            // The host let go of this drawable; stop ticking until it is started again.
+            mRunning = false;
+            return false;
+        }
+        if (mStartTime == UNSET_START_TIME) {
+            mStartTime = frameTimeMillis;
+        }
+        if (!mFrameRateLimiter.shouldDraw(frameTimeMillis)) {
+            return true;
+        }
+        computeFrameAt(frameTimeMillis - mStartTime);
+        invalidateSelf();
+        return true;
+    }
+
+    /**
+     * Computes the motion and colors at the given time since the start; the frame doesn't depend
+     * on the frames computed before.
+     */
+    private void computeFrameAt(long elapsedMillis) {
+        SpinnerGeometry.computeFrameAt(SpinnerGeometry.STYLE_CIRCULAR, elapsedMillis,
+                SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC, mKeyframes, mState);
+        final long duration = SpinnerGeometry.ANIMATION_DURATION;
+        final int cycle = (int) (elapsedMillis / duration);
+        if (cycle != mCycle) {
+            setCycle(cycle);
+        }
+        final float interpolatedTime = (elapsedMillis % duration) / (float) duration;
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            SpinnerGeometry.computeColor(interpolatedTime, batches.get(i).mColorState);
+        }
+    }
+
+    /**
+     * Moves every batch to the color of the given cycle, so batches with color sequences of
+     * different lengths each pick their own next color.
+     */
+    private void setCycle(int cycle) {
+        mCycle = cycle;
+        final ArrayList<Batch> batches = mBatches;
+        for (int i = 0, size = batches.size(); i < size; i++) {
+            final SpinnerState colorState = batches.get(i).mColorState;
+            colorState.setColorIndex(cycle % colorState.mColors.length);
+        }
+    }
+
+    /**
+     * Rings of the same colors and size, drawn with one paint.
+     */
+    private static final class Batch {
+        final boolean mLarge;
+        final float mArcRadius;
+        final Paint mPaint = new Paint();
+        final SpinnerState mColorState;
+        final Path mPath = new Path();
+        /** Centers of the rings, x and y interleaved. */
+        float[] mCenters = new float[8];
+        int mCount;
+
+        Batch(int[] colors, boolean large, float density) {
+            mLarge = large;
+            final SpinnerMetrics metrics = SpinnerMetrics.obtain(SpinnerGeometry.STYLE_CIRCULAR,
+                    SpinnerMetrics.getDiameter(large), density);
+            mArcRadius = metrics.mArcRadius;
+            mColorState = new SpinnerState(colors);
+            mPaint.setStrokeWidth(metrics.mStrokeWidth);
+            mPaint.setStrokeCap(Paint.Cap.SQUARE);
+            mPaint.setAntiAlias(true);
+            mPaint.setStyle(Paint.Style.STROKE);
+        }
+
+        void add(float centerX, float centerY) {
+            if (mCount * 2 == mCenters.length) {
+                mCenters = Arrays.copyOf(mCenters, mCenters.length * 2);
+            }
+            mCenters[mCount * 2] = centerX;
+            mCenters[mCount * 2 + 1] = centerY;
+            mCount++;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.xogrp.albert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Baked keyframe tables for one cycle of the indeterminate spinner animation.
+ *
+ * <p>The motion of a cycle only depends on the style, so start trim, end trim, ring rotation and
+ * group rotation are sampled once into primitive tables and linearly interpolated per frame.
+ * Values are offsets from the state stored at the start of the cycle (starting trims, starting
+ * rotation and completed rotation count).
+ *
+ * <p>Each half of the cycle is sampled separately, because the circular style jumps at the point
+ * where the arc stops growing and starts shrinking. With {@link #DEFAULT_RESOLUTION} the samples
+ * fall on the knots of the fast-out-slow-in table in {@link SpinnerGeometry}, so the baked
+ * output matches the live math up to float rounding. For any other resolution the largest
+ * deviation from the live math is measured while baking, and tables that deviate by more than
+ * {@link #MAX_ERROR} are rejected so the caller keeps evaluating the interpolator.
+ *
+ * <p>Tables are shared through a small process-wide LRU keyed by style, minimum arc and
+ * resolution, since every material size has a minimum arc of its own. Like
+ * {@link SpinnerGeometry}, this class has no android dependency.
+ */
+final class SpinnerKeyframes {
+
+    /** Samples per cycle that line up with the knots of the fast-out-slow-in table. */
+    static final int DEFAULT_RESOLUTION = 400;
+
+    /**
+     * Largest deviation from the live math accepted for a table, in fractions of a turn. The
+     * largest ring, 96 dp at xxxhdpi, has a radius under 192 px, on which this stays under a
+     * quarter of a pixel.
+     */
+    static final float MAX_ERROR = 2e-4f;
+
+    /** Point of the cycle at which both styles switch from moving one trim to the other. */
+    private static final float HALF_CYCLE = SpinnerGeometry.SHRINK_OFFSET;
+
+    /** Points between two samples that are checked against the live math while baking. */
+    private static final int ERROR_PROBES = 8;
+
+    private static final int MAX_CACHED_KEYFRAMES = 16;
+
+    /** Guarded by the class lock, see {@link #bake(int, float, int)}. */
+    private static final LinkedHashMap<Long, SpinnerKeyframes> sCache =
+            new LinkedHashMap<Long, SpinnerKeyframes>(MAX_CACHED_KEYFRAMES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, SpinnerKeyframes> eldest) {
+                    return size() > MAX_CACHED_KEYFRAMES;
+                }
+            };
+
+    private final int mStyle;
+    private final float mMinProgressArc;
+    /** Number of intervals in each half of the cycle. */
+    private final int mSteps;
+    private final float[] mStartTrim;
+    private final float[] mEndTrim;
+    private final float[] mRingRotation;
+    private final float[] mGroupRotation;
+    private final float mMaxError;
+
+    /**
+     * Returns the shared keyframes for a style, baking them on first use.
+     *
+     * @param style {@link SpinnerGeometry#STYLE_CIRCULAR} or
+     *              {@link SpinnerGeometry#STYLE_MATERIAL}
+     * @param minProgressArc minimum arc length of the material style, ignored for circular
+     * @param resolution samples per cycle, rounded up to an even number
+     * @return the keyframes, or {@code null} if the resolution is too coarse to stay within
+     *         {@link #MAX_ERROR}, in which case the motion has to be evaluated live
+     */
+    static SpinnerKeyframes obtain(int style, float minProgressArc, int resolution) {
+        final SpinnerKeyframes keyframes = bake(style, minProgressArc, resolution);
+        return keyframes.mMaxError <= MAX_ERROR ? keyframes : null;
+    }
+
+    /**
+     * Like {@link #obtain(int, float, int)}, but also returns tables that exceed
+     * {@link #MAX_ERROR}.
+     */
+    static synchronized SpinnerKeyframes bake(int style, float minProgressArc, int resolution) {
+        if (style == SpinnerGeometry.STYLE_CIRCULAR) {
+            minProgressArc = SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC;
+        }
+        final int steps = Math.max(1, (resolution + 1) / 2);
+        final Long key = ((long) Float.floatToIntBits(minProgressArc) << 32)
+                | ((long) steps << 1) | style;
+        SpinnerKeyframes keyframes = sCache.get(key);
+        if (keyframes == null) {
+            keyframes = new SpinnerKeyframes(style, minProgressArc, steps);
+            sCache.put(key, keyframes);
+        }
+        return keyframes;
+    }
+
+    private SpinnerKeyframes(int style, float minProgressArc, int steps) {
+        mStyle = style;
+        mMinProgressArc = minProgressArc;
+        mSteps = steps;
+        final int size = 2 * (steps + 1);
+        mStartTrim = new float[size];
+        mEndTrim = new float[size];
+        mRingRotation = new float[size];
+        mGroupRotation = new float[size];
+        // With all starting values at zero the live math yields the offsets directly.
+        final SpinnerState live = new SpinnerState(new int[] {0});
+        for (int half = 0; half < 2; half++) {
+            for (int i = 0; i <= steps; i++) {
+                float interpolatedTime = HALF_CYCLE * (half + i / (float) steps);
+                if (half == 0 && i == steps) {
+                    // The first half ends with the left limit of the shrink point.
+                    interpolatedTime = Math.nextAfter(HALF_CYCLE, 0);
+                }
+                final int index = half * (steps + 1) + i;
+                SpinnerGeometry.computeFrame(style, interpolatedTime, minProgressArc, live);
+                mStartTrim[index] = live.mStartTrim;
+                mEndTrim[index] = live.mEndTrim;
+                mRingRotation[index] = live.mRotation;
+                mGroupRotation[index] = live.mGroupRotation;
+            }
+        }
+        mMaxError = measureMaxError(live);
+    }
+
+    /**
+     * Baked counterpart of {@link SpinnerGeometry#computeFrame(int, float, float, SpinnerState)}.
+     * The finishing phase is rare and not baked, so it is still computed live.
+     */
+    void computeFrame(float interpolatedTime, SpinnerState state) {
+        if (state.mFinishing) {
+            SpinnerGeometry.computeFrame(mStyle, interpolatedTime, mMinProgressArc, state);
+            return;
+        }
+        SpinnerGeometry.computeColor(interpolatedTime, state);
+        final float position = positionOf(interpolatedTime);
+        state.mStartTrim = state.mStartingStartTrim + getStartTrim(position);
+        // The circular end trim follows the starting start trim, the material one its own.
+        state.mEndTrim = (mStyle == SpinnerGeometry.STYLE_CIRCULAR
+                ? state.mStartingStartTrim : state.mStartingEndTrim) + getEndTrim(position);
+        state.mRotation = state.mStartingRotation + getRingRotation(position);
+        state.mGroupRotation = getGroupRotation(position)
+                + SpinnerGeometry.GROUP_FULL_ROTATION * state.mRotationCount;
+    }
+
+    int getResolution() {
+        return 2 * mSteps;
+    }
+
+    /**
+     * Returns the largest absolute difference between the baked and the live trims and ring
+     * rotation (in fractions of a turn) found while baking. At most {@link #MAX_ERROR} for the
+     * keyframes returned by {@link #obtain(int, float, int)}.
+     */
+    float getMaxError() {
+        return mMaxError;
+    }
+
+    /**
+     * Maps a point of the cycle to a table position, to be passed to the other getters. Computing
+     * the position once per frame lets all tables share the same index and fraction.
+     *
+     * @param interpolatedTime point of the cycle from [0..1]
+     */
+    float positionOf(float interpolatedTime) {
+        final int steps = mSteps;
+        if (interpolatedTime < HALF_CYCLE) {
+            return Math.max(0f, interpolatedTime / HALF_CYCLE) * steps;
+        }
+        final float scaled = Math.min(1f, (interpolatedTime - HALF_CYCLE) / (1f - HALF_CYCLE));
+        return steps + 1 + scaled * steps;
+    }
+
+    float getStartTrim(float position) {
+        return sample(mStartTrim, position);
+    }
+
+    float getEndTrim(float position) {
+        return sample(mEndTrim, position);
+    }
+
+    float getRingRotation(float position) {
+        return sample(mRingRotation, position);
+    }
+
+    /** Returns the group rotation in degrees. */
+    float getGroupRotation(float position) {
+        return sample(mGroupRotation, position);
+    }
+
+    private static float sample(float[] table, float position) {
+        final int index = (int) position;
+        if (index >= table.length - 1) {
+            return table[table.length - 1];
+        }
+        final float fraction = position - index;
+        final float start = table[index];
+        return start + (table[index + 1] - start) * fraction;
+    }
+
+    private float measureMaxError(SpinnerState live) {
+        float maxError = 0f;
+        final int probes = 2 * mSteps * ERROR_PROBES;
+        for (int i = 0; i < probes; i++) {
+            final float interpolatedTime = i / (float) probes;
+            final float position = positionOf(interpolatedTime);
+            SpinnerGeometry.computeFrame(mStyle, interpolatedTime, mMinProgressArc, live);
+            maxError = Math.max(maxError, Math.abs(getStartTrim(position) - live.mStartTrim));
+            maxError = Math.max(maxError, Math.abs(getEndTrim(position) - live.mEndTrim));
+            maxError = Math.max(maxError, Math.abs(getRingRotation(position) - live.mRotation));
+        }
+        return maxError;
+    }
+}
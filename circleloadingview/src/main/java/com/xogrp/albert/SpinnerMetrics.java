@@ -0,0 +1,127 @@
+package com.xogrp.albert;
+
+import android.util.LruCache;
+
+/**
+ * Ring, arrow and pre-Lollipop shadow dimensions in pixels of a spinner of a given diameter and
+ * density.
+ *
+ * <p>The two standard diameters keep their hand-tuned dimensions. Smaller and larger spinners
+ * scale those of the nearest standard size, and diameters in between interpolate them. Metrics
+ * are immutable and shared through a small process-wide cache keyed by style, diameter and
+ * density, so spinners of the same size don't derive them again.
+ */
+final class SpinnerMetrics {
+
+    /** Range of diameters in dp that a spinner can have. */
+    static final float MIN_DIAMETER = 16f;
+    static final float MAX_DIAMETER = 96f;
+
+    /** Diameters in dp of the standard sizes. */
+    static final float DIAMETER = 40f;
+    static final float DIAMETER_LARGE = 56f;
+
+    /** Ring dimensions in dp of the standard sizes, per style. */
+    private static final float CIRCULAR_CENTER_RADIUS = 7.5f;
+    private static final float CIRCULAR_CENTER_RADIUS_LARGE = 11f;
+    private static final float MATERIAL_CENTER_RADIUS = 8.75f;
+    private static final float MATERIAL_CENTER_RADIUS_LARGE = 12.5f;
+    private static final float STROKE_WIDTH = 2.5f;
+    private static final float STROKE_WIDTH_LARGE = 3f;
+
+    /** Arrowhead dimensions in dp of the standard sizes. */
+    private static final float ARROW_WIDTH = 10f;
+    private static final float ARROW_HEIGHT = 5f;
+    private static final float ARROW_WIDTH_LARGE = 12f;
+    private static final float ARROW_HEIGHT_LARGE = 6f;
+
+    private static final int MAX_CACHED_METRICS = 16;
+
+    private static final LruCache<Long, SpinnerMetrics> sCache =
+            new LruCache<>(MAX_CACHED_METRICS);
+
+    /** Size of the drawable. */
+    final float mDiameter;
+    /** Center radius of the ring, as set on the drawable of the style. */
+    final float mCenterRadius;
+    /** Radius of the circle the drawable of the style strokes the arc on. */
+    final float mArcRadius;
+    final float mStrokeWidth;
+    final float mArrowWidth;
+    final float mArrowHeight;
+    /** Distance from the edge of the drawable to the center radius of the ring. */
+    final float mStrokeInset;
+    /** Radius of the disc drawn behind the ring below Lollipop, which fills the drawable. */
+    final float mShadowDiscRadius;
+    /** Width of the shadow around that disc, by which the view grows on each side. */
+    final int mShadowInset;
+
+    private SpinnerMetrics(int style, float diameter, float density) {
+        mDiameter = diameter * density;
+        final boolean material = style == SpinnerGeometry.STYLE_MATERIAL;
+        mCenterRadius = density * scale(diameter,
+                material ? MATERIAL_CENTER_RADIUS : CIRCULAR_CENTER_RADIUS,
+                material ? MATERIAL_CENTER_RADIUS_LARGE : CIRCULAR_CENTER_RADIUS_LARGE);
+        mStrokeWidth = density * scale(diameter, STROKE_WIDTH, STROKE_WIDTH_LARGE);
+        // The circular ring strokes its arc half a stroke outside of its center radius.
+        mArcRadius = material ? mCenterRadius : mCenterRadius + mStrokeWidth / 2f;
+        mArrowWidth = density * scale(diameter, ARROW_WIDTH, ARROW_WIDTH_LARGE);
+        mArrowHeight = density * scale(diameter, ARROW_HEIGHT, ARROW_HEIGHT_LARGE);
+        mStrokeInset = (int) mDiameter / 2f - mCenterRadius;
+        mShadowDiscRadius = (int) mDiameter / 2f;
+        mShadowInset = (int) (density * scale(diameter, ShadowBitmapCache.SHADOW_RADIUS,
+                ShadowBitmapCache.SHADOW_RADIUS));
+    }
+
+    /**
+     * Returns the metrics of a spinner, deriving them on first use. Safe to call from any thread.
+     *
+     * @param style {@link SpinnerGeometry#STYLE_CIRCULAR} or
+     *              {@link SpinnerGeometry#STYLE_MATERIAL}
+     * @param diameter diameter in dp, from {@link #MIN_DIAMETER} to {@link #MAX_DIAMETER}
+     * @param density display density
+     */
+    static SpinnerMetrics obtain(int style, float diameter, float density) {
+        // Diameter and density are positive, which leaves the sign bit of the diameter free for
+        // the style.
+        final long key = (long) (Float.floatToIntBits(diameter) | style << 31) << 32
+                | (Float.floatToIntBits(density) & 0xFFFFFFFFL);
+        SpinnerMetrics metrics = sCache.get(key);
+        if (metrics == null) {
+            metrics = new SpinnerMetrics(style, diameter, density);
+            sCache.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the diameter in dp of the large or the default standard size.
+     */
+    static float getDiameter(boolean large) {
+        return large ? DIAMETER_LARGE : DIAMETER;
+    }
+
+    /**
+     * Throws if the diameter in dp is outside of the supported range.
+     */
+    static void checkDiameter(float diameter) {
+        if (!(diameter >= MIN_DIAMETER && diameter <= MAX_DIAMETER)) {
+            throw new IllegalArgumentException("Diameter must be from " + MIN_DIAMETER + " to "
+                    + MAX_DIAMETER + " dp: " + diameter);
+        }
+    }
+
+    /**
+     * Scales a dimension given for both standard sizes to a diameter.
+     */
+    private static float scale(float diameter, float normal, float large) {
+        if (diameter <= DIAMETER) {
+            return normal * diameter / DIAMETER;
+        }
+        if (diameter >= DIAMETER_LARGE) {
+            return large * diameter / DIAMETER_LARGE;
+        }
+        final float fraction = (diameter - DIAMETER) / (DIAMETER_LARGE - DIAMETER);
+        return normal + (large - normal) * fraction;
+    }
+}
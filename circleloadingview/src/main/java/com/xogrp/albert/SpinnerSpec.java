@@ -0,0 +1,256 @@
+package com.xogrp.albert;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.util.AttributeSet;
+
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * The {@code CircleLoadingView} attributes of a spinner, parsed once so that every spinner view
+ * reads its XML the same way and configures its {@link ProgressDrawableCreator} the same way.
+ *
+ * <p>The views keep their settings here until the drawable is created, the first time they are
+ * shown. Parsed attributes are cached per theme, so inflating the same spinner again skips
+ * attribute resolution. Parsing doesn't touch a looper and the cache is synchronized, so it can
+ * run on the background thread of an {@code AsyncLayoutInflater}.
+ */
+final class SpinnerSpec {
+
+    /** Color of the disc behind the spinner unless set otherwise. */
+    static final int DEFAULT_BACKGROUND_COLOR = 0xFFFAFAFA;
+
+    /** Values of the {@code engine} attribute. */
+    static final int ENGINE_CIRCULAR = 0;
+    static final int ENGINE_MATERIAL = 1;
+    static final int ENGINE_VECTOR = 2;
+
+    /** Distinct attribute sets cached per theme at most. */
+    private static final int MAX_CACHED_SPECS = 32;
+
+    /** Parsed specs per theme, dropped along with the theme. Guarded by itself. */
+    private static final WeakHashMap<Resources.Theme, ThemeCache> sCache = new WeakHashMap<>();
+
+    int mEngine = ENGINE_CIRCULAR;
+    int mBackgroundColor = DEFAULT_BACKGROUND_COLOR;
+    /** Color of the circle drawn by the drawable inside the ring. */
+    int mProgressBackgroundColor = Color.TRANSPARENT;
+    int mSize = CircularProgressDrawable.DEFAULT;
+    /** Diameter in dp, or 0 to follow {@link #mSize}. */
+    float mDiameter;
+    /** Colors of the progress, or {@code null} to keep the colors of the drawable. */
+    int[] mColors;
+    boolean mShowArrow;
+    boolean mUseSpriteAtlas;
+    int mFrameRate = FrameRateLimiter.FRAME_RATE_DEFAULT;
+    boolean mPerceptualColorBlending;
+    boolean mFrameStatsEnabled;
+    boolean mIndeterminate = true;
+    /** Progress of the determinate arc, shown unless {@link #mIndeterminate}. */
+    float mProgress;
+    /** Clock of the animation, or {@code null} for the frame time. */
+    TimeSource mTimeSource;
+
+    /**
+     * Reads the attributes of a spinner view. Attribute sets with the same spinner attributes,
+     * defaults and style are only resolved the first time for a theme and configuration, whatever
+     * their ids and layout parameters; the spec returned is always a copy the view may modify.
+     *
+     * @param attrs attributes of the view, or {@code null} for the defaults
+     */
+    static SpinnerSpec parse(Context context, AttributeSet attrs, int defStyleAttr) {
+        if (attrs == null) {
+            return new SpinnerSpec();
+        }
+        final String key = getCacheKey(attrs, defStyleAttr);
+        final Resources.Theme theme = context.getTheme();
+        final Configuration configuration = context.getResources().getConfiguration();
+        synchronized (sCache) {
+            final ThemeCache cache = sCache.get(theme);
+            if (cache != null && cache.mConfiguration.equals(configuration)) {
+                final SpinnerSpec cached = cache.mSpecs.get(key);
+                if (cached != null) {
+                    return cached.copy();
+                }
+            }
+        }
+        final SpinnerSpec spec = read(context, attrs, defStyleAttr);
+        synchronized (sCache) {
+            ThemeCache cache = sCache.get(theme);
+            if (cache == null || !cache.mConfiguration.equals(configuration)) {
+                // Resources resolve differently after a configuration change, e.g. night mode.
+                cache = new ThemeCache(configuration);
+                sCache.put(theme, cache);
+            }
+            if (cache.mSpecs.size() < MAX_CACHED_SPECS) {
+                cache.mSpecs.put(key, spec.copy());
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * Drops every cached spec, for instance after a style was applied to a theme at runtime.
+     */
+    static void clearCache() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * Returns a key that is equal for attribute sets that resolve to the same spec in a given
+     * theme: the raw values of the spinner's own attributes, which still name the resources and
+     * theme attributes they refer to, and the style and default style they fall back to. Ids,
+     * layout parameters and other view attributes are left out, so spinners that only differ in
+     * those share an entry.
+     */
+    private static String getCacheKey(AttributeSet attrs, int defStyleAttr) {
+        final int count = attrs.getAttributeCount();
+        final StringBuilder key = new StringBuilder(count * 16);
+        key.append(defStyleAttr).append(':').append(attrs.getStyleAttribute());
+        for (int i = 0; i < count; i++) {
+            final int name = attrs.getAttributeNameResource(i);
+            if (isSpinnerAttribute(name)) {
+                key.append(';').append(name).append('=').append(attrs.getAttributeValue(i));
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isSpinnerAttribute(int name) {
+        for (int attr : R.styleable.CircleLoadingView) {
+            if (attr == name) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SpinnerSpec read(Context context, AttributeSet attrs, int defStyleAttr) {
+        final SpinnerSpec spec = new SpinnerSpec();
+        final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CircleLoadingView,
+                defStyleAttr, 0);
+        spec.mEngine = a.getInt(R.styleable.CircleLoadingView_engine, ENGINE_CIRCULAR);
+        spec.mBackgroundColor = a.getColor(R.styleable.CircleLoadingView_bg_color,
+                DEFAULT_BACKGROUND_COLOR);
+        final int size = a.getInteger(R.styleable.CircleLoadingView_size,
+                CircularProgressDrawable.DEFAULT);
+        if (size == CircularProgressDrawable.DEFAULT || size == CircularProgressDrawable.LARGE) {
+            spec.mSize = size;
+        }
+        final float diameter = a.getDimension(R.styleable.CircleLoadingView_diameter, 0f);
+        if (diameter > 0) {
+            // In dp, rounded so that a diameter given in dp converts back exactly.
+            spec.mDiameter = Math.round(diameter
+                    / context.getResources().getDisplayMetrics().density * 100) / 100f;
+            SpinnerMetrics.checkDiameter(spec.mDiameter);
+        }
+        spec.mColors = new int[] {
+                a.getColor(R.styleable.CircleLoadingView_progress_color, Color.BLACK),
+                a.getColor(R.styleable.CircleLoadingView_progress_second_color, Color.BLACK),
+                a.getColor(R.styleable.CircleLoadingView_progress_third_color, Color.BLACK)
+        };
+        spec.mShowArrow = a.getBoolean(R.styleable.CircleLoadingView_show_arrow, false);
+        spec.mUseSpriteAtlas = a.getBoolean(R.styleable.CircleLoadingView_use_sprite_atlas, false);
+        spec.mFrameRate = a.getInt(R.styleable.CircleLoadingView_frame_rate,
+                FrameRateLimiter.FRAME_RATE_DEFAULT);
+        spec.mPerceptualColorBlending =
+                a.getBoolean(R.styleable.CircleLoadingView_perceptual_color_blending, false);
+        a.recycle();
+        return spec;
+    }
+
+    /**
+     * Returns a copy of this spec that can be modified on its own.
+     */
+    SpinnerSpec copy() {
+        final SpinnerSpec copy = new SpinnerSpec();
+        copy.mEngine = mEngine;
+        copy.mBackgroundColor = mBackgroundColor;
+        copy.mProgressBackgroundColor = mProgressBackgroundColor;
+        copy.mSize = mSize;
+        copy.mDiameter = mDiameter;
+        copy.mColors = mColors != null ? mColors.clone() : null;
+        copy.mShowArrow = mShowArrow;
+        copy.mUseSpriteAtlas = mUseSpriteAtlas;
+        copy.mFrameRate = mFrameRate;
+        copy.mPerceptualColorBlending = mPerceptualColorBlending;
+        copy.mFrameStatsEnabled = mFrameStatsEnabled;
+        copy.mIndeterminate = mIndeterminate;
+        copy.mProgress = mProgress;
+        copy.mTimeSource = mTimeSource;
+        return copy;
+    }
+
+    /**
+     * Returns the intrinsic size in pixels of the drawable {@link #createCreator(Context)}
+     * creates, so a view can be measured before its drawable exists.
+     */
+    int getDiameter(float density) {
+        return (int) (getDiameterDp() * density);
+    }
+
+    /**
+     * Returns the diameter in dp, set on its own or by {@link #mSize}.
+     */
+    float getDiameterDp() {
+        return mDiameter > 0 ? mDiameter
+                : SpinnerMetrics.getDiameter(mSize == CircularProgressDrawable.LARGE);
+    }
+
+    /**
+     * Creates the creator of the engine of this spec, with its drawable created and configured.
+     * Main thread only.
+     */
+    ProgressDrawableCreator createCreator(Context context) {
+        final ProgressDrawableCreator creator;
+        switch (mEngine) {
+            case ENGINE_MATERIAL:
+                creator = new ProgressDrawableCreator.MaterialProgressDrawableCreator();
+                break;
+            case ENGINE_VECTOR:
+                creator = new ProgressDrawableCreator.VectorProgressDrawableCreator();
+                break;
+            default:
+                creator = new ProgressDrawableCreator.CircularProgressDrawableCreator();
+                break;
+        }
+        creator.createDrawable(context);
+        creator.getDrawable().setAlpha(255);
+        creator.setSize(mSize);
+        if (mDiameter > 0) {
+            creator.setDiameter(mDiameter);
+        }
+        creator.setBackgroundColor(mProgressBackgroundColor);
+        if (mColors != null) {
+            creator.setColorSchemeColors(mColors);
+        }
+        creator.setArrowEnabled(mShowArrow);
+        creator.setSpriteAtlasEnabled(mUseSpriteAtlas);
+        creator.setFrameRate(mFrameRate);
+        creator.setPerceptualColorBlending(mPerceptualColorBlending);
+        creator.setFrameStatsEnabled(mFrameStatsEnabled);
+        if (mTimeSource != null) {
+            creator.setTimeSource(mTimeSource);
+        }
+        if (!mIndeterminate) {
+            creator.setProgress(mProgress);
+        }
+        return creator;
+    }
+
+    /** Specs parsed with a theme, valid for the configuration they were parsed in. */
+    private static final class ThemeCache {
+        final Configuration mConfiguration;
+        final HashMap<String, SpinnerSpec> mSpecs = new HashMap<>();
+
+        ThemeCache(Configuration configuration) {
+            mConfiguration = new Configuration(configuration);
+        }
+    }
+}
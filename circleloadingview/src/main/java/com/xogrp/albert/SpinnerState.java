@@ -0,0 +1,117 @@
+package com.xogrp.albert;
+
+/**
+ * Animation state of one spinner, kept in primitives so it can be advanced by
+ * {@link SpinnerGeometry} without any android dependency.
+ *
+ * <p>The "starting" values are captured at the beginning of each cycle; the remaining values are
+ * the output of the last computed frame. Trims and ring rotation are fractions of a full turn,
+ * group rotation is in degrees.
+ */
+final class SpinnerState {
+    float mStartTrim;
+    float mEndTrim;
+    float mRotation;
+    float mGroupRotation;
+
+    float mStartingStartTrim;
+    float mStartingEndTrim;
+    float mStartingRotation;
+    float mRotationCount;
+    /** Set while a visible arc from a gesture is being closed before the spinner starts. */
+    boolean mFinishing;
+
+    /**
+     * Arc that was visible when the animation started, closed during the first half cycle before
+     * the spinner starts, and the color it was drawn with.
+     */
+    boolean mCloseArc;
+    float mOriginStartTrim;
+    float mOriginEndTrim;
+    float mOriginRotation;
+    float mOriginGroupRotation;
+    int mOriginColorIndex;
+
+    /** Start and end of the ring and group rotations of a morph into a determinate arc. */
+    float mStartingGroupRotation;
+    float mTargetRotation;
+    float mTargetGroupRotation;
+
+    int[] mColors;
+    // mColorIndex represents the offset into the available mColors that the
+    // progress circle should currently display. As the progress circle is
+    // animating, the mColorIndex moves by one to the next available color.
+    int mColorIndex;
+    int mCurrentColor;
+    /** Transitions between consecutive colors, looked up in the last part of each cycle. */
+    ColorTransitionTable mColorTable;
+    boolean mPerceptualColors;
+
+    SpinnerState(int[] colors) {
+        setColors(colors);
+    }
+
+    void setColors(int[] colors) {
+        mColors = colors;
+        mColorTable = ColorTransitionTable.obtain(colors, mPerceptualColors);
+        setColorIndex(0);
+    }
+
+    /**
+     * @param perceptual {@code true} to blend colors in OKLab instead of per channel
+     */
+    void setPerceptualColors(boolean perceptual) {
+        if (mPerceptualColors != perceptual) {
+            mPerceptualColors = perceptual;
+            mColorTable = ColorTransitionTable.obtain(mColors, perceptual);
+        }
+    }
+
+    void setColorIndex(int index) {
+        mColorIndex = index;
+        mCurrentColor = mColors[index];
+    }
+
+    int getStartingColor() {
+        return mColors[mColorIndex];
+    }
+
+    int getNextColorIndex() {
+        return (mColorIndex + 1) % mColors.length;
+    }
+
+    int getNextColor() {
+        return mColors[getNextColorIndex()];
+    }
+
+    /** Start angle of the arc in degrees, before the group rotation is applied. */
+    float getStartAngle() {
+        return (mStartTrim + mRotation) * 360;
+    }
+
+    /** Sweep angle of the arc in degrees. */
+    float getSweepAngle() {
+        return (mEndTrim - mStartTrim) * 360;
+    }
+
+    /**
+     * Captures the current trims and rotation as the starting point of the next cycle.
+     */
+    void storeOriginals() {
+        mStartingStartTrim = mStartTrim;
+        mStartingEndTrim = mEndTrim;
+        mStartingRotation = mRotation;
+    }
+
+    /**
+     * Resets trims and rotation, including the starting values, to zero.
+     */
+    void resetOriginals() {
+        mStartingStartTrim = 0;
+        mStartingEndTrim = 0;
+        mStartingRotation = 0;
+        mStartTrim = 0;
+        mEndTrim = 0;
+        mRotation = 0;
+    }
+}
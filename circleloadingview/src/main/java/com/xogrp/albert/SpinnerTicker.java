@@ -0,0 +1,185 @@
+package com.xogrp.albert;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Process-wide frame clock shared by every spinner drawable.
+ *
+ * <p>Instead of each drawable running its own infinite animator, drawables register a
+ * {@link FrameCallback} here. A single Choreographer frame callback (or a {@link Handler} loop
+ * below API 16) is posted while at least one callback is registered, and every registered
+ * callback is advanced from the same frame timestamp.
+ *
+ * <p>Callbacks are held through weak references, so a drawable whose host went away is dropped
+ * automatically. A callback is also dropped as soon as it returns {@code false} from
+ * {@link FrameCallback#doFrame(long)}.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class SpinnerTicker {
+
+    /** Frame delay used when Choreographer is not available, same as the pre-16 animators. */
+    private static final long FALLBACK_FRAME_DELAY = 10;
+
+    interface FrameCallback {
+        /**
+         * Called once per frame while registered.
+         *
+         * @param frameTimeMillis frame time in the {@link SystemClock#uptimeMillis()} time base
+         * @return {@code true} to keep receiving frames, {@code false} to be unregistered
+         */
+        boolean doFrame(long frameTimeMillis);
+    }
+
+    private static SpinnerTicker sInstance;
+
+    private final ArrayList<WeakReference<FrameCallback>> mCallbacks =
+            new ArrayList<WeakReference<FrameCallback>>();
+    private final FrameScheduler mScheduler;
+    private boolean mScheduled;
+    private boolean mDispatching;
+    private boolean mPendingCleanup;
+
+    static SpinnerTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new SpinnerTicker();
+        }
+        return sInstance;
+    }
+
+    private SpinnerTicker() {
+        mScheduler = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new ChoreographerScheduler() : new HandlerScheduler();
+    }
+
+    /**
+     * Registers a callback to be advanced on every frame. Registering a callback that is already
+     * registered has no effect.
+     */
+    void register(@NonNull FrameCallback callback) {
+        if (indexOf(callback) >= 0) {
+            return;
+        }
+        mCallbacks.add(new WeakReference<FrameCallback>(callback));
+        scheduleFrame();
+    }
+
+    /**
+     * Unregisters a callback. Safe to call from within {@link FrameCallback#doFrame(long)}.
+     */
+    void unregister(@NonNull FrameCallback callback) {
+        final int index = indexOf(callback);
+        if (index >= 0) {
+            removeAt(index);
+        }
+    }
+
+    boolean isRegistered(@NonNull FrameCallback callback) {
+        return indexOf(callback) >= 0;
+    }
+
+    private int indexOf(FrameCallback callback) {
+        final ArrayList<WeakReference<FrameCallback>> callbacks = mCallbacks;
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            final WeakReference<FrameCallback> ref = callbacks.get(i);
+            if (ref != null && ref.get() == callback) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        if (mDispatching) {
+            // Compacted once the current frame has been dispatched.
+            mCallbacks.set(index, null);
+            mPendingCleanup = true;
+        } else {
+            mCallbacks.remove(index);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!mScheduled && !mCallbacks.isEmpty()) {
+            mScheduled = true;
+            mScheduler.postFrame(this);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void dispatchFrame(long frameTimeMillis) {
+        mScheduled = false;
+        mDispatching = true;
+        final ArrayList<WeakReference<FrameCallback>> callbacks = mCallbacks;
+        // Callbacks registered while dispatching get their first frame on the next vsync.
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            final WeakReference<FrameCallback> ref = callbacks.get(i);
+            if (ref == null) {
+                continue;
+            }
+            final FrameCallback callback = ref.get();
+            if (callback == null || !callback.doFrame(frameTimeMillis)) {
+                callbacks.set(i, null);
+                mPendingCleanup = true;
+            }
+        }
+        mDispatching = false;
+        if (mPendingCleanup) {
+            mPendingCleanup = false;
+            for (int i = callbacks.size() - 1; i >= 0; i--) {
+                if (callbacks.get(i) == null) {
+                    callbacks.remove(i);
+                }
+            }
+        }
+        scheduleFrame();
+    }
+
+    private interface FrameScheduler {
+        void postFrame(SpinnerTicker ticker);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerScheduler implements FrameScheduler,
+            Choreographer.FrameCallback {
+        private SpinnerTicker mTicker;
+
+        @Override
+        public void postFrame(SpinnerTicker ticker) {
+            mTicker = ticker;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Choreographer uses System.nanoTime(), which shares its time base with uptimeMillis.
+            mTicker.dispatchFrame(frameTimeNanos / 1000000);
+        }
+    }
+
+    private static class HandlerScheduler implements FrameScheduler, Runnable {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private SpinnerTicker mTicker;
+
+        @Override
+        public void postFrame(SpinnerTicker ticker) {
+            mTicker = ticker;
+            mHandler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+
+        @Override
+        public void run() {
+            mTicker.dispatchFrame(SystemClock.uptimeMillis());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.xogrp.albert;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import androidx.annotation.LayoutRes;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps released spinner views for reuse, for instance by the placeholder rows of a list, so
+ * a row being bound takes an inflated and configured spinner instead of inflating a new one.
+ *
+ * <p>A spinner attached again within a second of being detached continues its animation where it
+ * left off, so a pooled spinner doesn't restart its cycle on every bind. Main thread only.
+ */
+public final class SpinnerViewPool {
+
+    private final int mLayout;
+    private final int mMaxSize;
+    private final ArrayList<View> mViews;
+
+    /**
+     * @param layout layout whose root is a {@link CircleLoadingView} or a
+     *               {@link LiteCircleLoadingView}
+     * @param maxSize number of released views kept at most
+     */
+    public SpinnerViewPool(@LayoutRes int layout, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must not be negative: " + maxSize);
+        }
+        mLayout = layout;
+        mMaxSize = maxSize;
+        mViews = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Returns a released spinner, or inflates a new one if the pool is empty. The view is not
+     * added to {@code parent}, which is only used for its layout parameters and context.
+     */
+    @NonNull
+    public View acquire(@NonNull ViewGroup parent) {
+        final int size = mViews.size();
+        if (size > 0) {
+            return mViews.remove(size - 1);
+        }
+        return LayoutInflater.from(parent.getContext()).inflate(mLayout, parent, false);
+    }
+
+    /**
+     * Removes the spinner from its parent and keeps it for a later {@link #acquire(ViewGroup)},
+     * unless the pool is full.
+     */
+    public void release(@NonNull View view) {
+        final ViewParent parent = view.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(view);
+        }
+        if (mViews.size() < mMaxSize && !mViews.contains(view)) {
+            mViews.add(view);
+        }
+    }
+
+    /**
+     * Returns the number of views waiting to be acquired.
+     */
+    public int size() {
+        return mViews.size();
+    }
+
+    /**
+     * Drops every released view.
+     */
+    public void clear() {
+        mViews.clear();
+    }
+}
@@ -0,0 +1,358 @@
+package com.xogrp.albert;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link CircleLoadingView} variant that draws on a {@link SurfaceView} from a render thread of
+ * its own, so the spinner keeps turning while the main thread is stalled by heavy work.
+ *
+ * <p>It accepts the same XML attributes. The ring follows the same {@link SpinnerGeometry} motion
+ * and colors as the circular and material engines and is drawn on a disc of the background
+ * color, without the arrow, the sprite atlas or the disc shadow.
+ *
+ * <p>The render thread lives from the creation to the destruction of the surface, so it stops
+ * while the view is hidden or detached. Frames are paced by the vsync of the render thread's own
+ * Choreographer, or a {@link Handler} loop below API 16, and drawn with
+ * {@link SurfaceHolder#lockCanvas()}. Once the surface is created again the animation continues
+ * from the point it was at.
+ *
+ * <p>The surface is placed on top of the window, so the view shouldn't be covered by other views.
+ */
+public class SurfaceCircleLoadingView extends SurfaceView implements SurfaceHolder.Callback {
+
+    /** Frame delay used when Choreographer is not available, same as {@link SpinnerTicker}. */
+    private static final long FALLBACK_FRAME_DELAY = 10;
+
+    private static final long UNSET_START_TIME = -1;
+
+    private final SpinnerSpec mSpec;
+    private final float mDensity;
+
+    /**
+     * Held by the render thread while it draws a frame, so the surface is never drawn on after
+     * {@link #surfaceDestroyed(SurfaceHolder)} returns.
+     */
+    private final Object mSurfaceLock = new Object();
+    /** Colors set since the last frame, picked up by the render thread. */
+    private final AtomicReference<int[]> mPendingColors = new AtomicReference<>();
+    private final AtomicLong mFrameCount = new AtomicLong();
+    private FrameSource mFrameSource;
+    private Renderer mRenderer;
+
+    /*
+     * Animation state. Only touched by the render thread while it runs, and by the main thread
+     * before it starts and after it has stopped.
+     */
+    private final SpinnerState mState;
+    private long mResumePhase;
+
+    public SurfaceCircleLoadingView(Context context) {
+        this(context, null);
+    }
+
+    public SurfaceCircleLoadingView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SurfaceCircleLoadingView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mDensity = context.getResources().getDisplayMetrics().density;
+        mSpec = SpinnerSpec.parse(context, attrs, defStyleAttr);
+        mState = new SpinnerState(
+                mSpec.mColors != null ? mSpec.mColors : new int[] {Color.BLACK});
+        mState.setPerceptualColors(mSpec.mPerceptualColorBlending);
+        setZOrderOnTop(true);
+        final SurfaceHolder holder = getHolder();
+        holder.setFormat(PixelFormat.TRANSLUCENT);
+        holder.addCallback(this);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int diameter = mSpec.getDiameter(mDensity);
+        setMeasuredDimension(
+                resolveSize(diameter + getPaddingLeft() + getPaddingRight(), widthMeasureSpec),
+                resolveSize(diameter + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
+
+    /**
+     * Set the colors used in the progress animation. The first color is used as the starting
+     * color. Takes effect on the next frame of the render thread.
+     *
+     * @param colors colors of the ring, used in sequence
+     */
+    public void setColorSchemeColors(@NonNull int... colors) {
+        if (colors.length == 0) {
+            throw new IllegalArgumentException("At least one color is required");
+        }
+        mSpec.mColors = colors.clone();
+        mPendingColors.set(mSpec.mColors);
+    }
+
+    /**
+     * Returns the number of frames drawn since the view was created. Safe to call from any
+     * thread, for instance to check that frames keep coming while the main thread is busy.
+     */
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    /**
+     * Paces the render threads started from now on with the given source instead of their own
+     * vsync, for instance to draw in real time under a fake clock. {@code null} restores vsync.
+     */
+    void setFrameSource(FrameSource frameSource) {
+        mFrameSource = frameSource;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mRenderer = new Renderer(holder);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        mRenderer.setSize(width, height, getPaddingLeft(), getPaddingTop(), getPaddingRight(),
+                getPaddingBottom());
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mRenderer.quit();
+        mRenderer = null;
+    }
+
+    /**
+     * Tells the render thread when to draw its next frame.
+     */
+    interface FrameSource {
+        /**
+         * Calls the callback once at the next frame, on the render thread that posted it.
+         */
+        void postFrame(@NonNull SpinnerTicker.FrameCallback callback);
+    }
+
+    /**
+     * Draws frames on its own thread, from the creation of its surface until {@link #quit()}.
+     */
+    private final class Renderer implements Runnable, SpinnerTicker.FrameCallback {
+        private final SurfaceHolder mHolder;
+        private final HandlerThread mThread;
+        private final Handler mHandler;
+        private final FrameSource mFrameSource;
+        private final FrameRateLimiter mFrameRateLimiter = new FrameRateLimiter();
+        private final int mStyle;
+        private final SpinnerKeyframes mKeyframes;
+        private final float mArcRadius;
+        private final float mMinProgressArc;
+        private final Paint mPaint = new Paint();
+        private final Paint mDiscPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final RectF mArcBounds = new RectF();
+
+        /** Guarded by {@link #mSurfaceLock}. */
+        private boolean mValid = true;
+        private final RectF mContentBounds = new RectF();
+
+        private long mStartTime = UNSET_START_TIME;
+        private long mLastFrameTime;
+
+        Renderer(SurfaceHolder holder) {
+            mHolder = holder;
+            mStyle = mSpec.mEngine == SpinnerSpec.ENGINE_MATERIAL
+                    ? SpinnerGeometry.STYLE_MATERIAL : SpinnerGeometry.STYLE_CIRCULAR;
+            final SpinnerMetrics metrics = SpinnerMetrics.obtain(mStyle, mSpec.getDiameterDp(),
+                    mDensity);
+            mArcRadius = metrics.mArcRadius;
+            final float strokeWidth = metrics.mStrokeWidth;
+            mPaint.setStrokeWidth(strokeWidth);
+            mPaint.setStrokeCap(Paint.Cap.SQUARE);
+            mPaint.setAntiAlias(true);
+            mPaint.setStyle(Paint.Style.STROKE);
+            mDiscPaint.setColor(mSpec.mBackgroundColor);
+            mMinProgressArc = mStyle == SpinnerGeometry.STYLE_MATERIAL
+                    ? SpinnerGeometry.getMaterialMinProgressArc(strokeWidth, metrics.mCenterRadius)
+                    : SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC;
+            mKeyframes = SpinnerKeyframes.obtain(mStyle, mMinProgressArc,
+                    SpinnerKeyframes.DEFAULT_RESOLUTION);
+            mFrameRateLimiter.setFrameRate(mSpec.mFrameRate);
+            mThread = new HandlerThread("SurfaceCircleLoadingView",
+                    Process.THREAD_PRIORITY_DISPLAY);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+            if (SurfaceCircleLoadingView.this.mFrameSource != null) {
+                mFrameSource = SurfaceCircleLoadingView.this.mFrameSource;
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mFrameSource = new ChoreographerFrameSource();
+            } else {
+                mFrameSource = new HandlerFrameSource(mHandler);
+            }
+            mHandler.post(this);
+        }
+
+        void setSize(int width, int height, int paddingLeft, int paddingTop, int paddingRight,
+                int paddingBottom) {
+            synchronized (mSurfaceLock) {
+                mContentBounds.set(paddingLeft, paddingTop, width - paddingRight,
+                        height - paddingBottom);
+            }
+        }
+
+        /**
+         * Stops drawing, waiting for a frame being drawn to complete, and keeps the point of the
+         * cycle the animation was at for the next renderer. Main thread only.
+         */
+        void quit() {
+            synchronized (mSurfaceLock) {
+                mValid = false;
+            }
+            mThread.quit();
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (mStartTime != UNSET_START_TIME) {
+                mResumePhase = mLastFrameTime - mStartTime;
+            }
+        }
+
+        /** Schedules the first frame, on the render thread. */
+        @Override
+        public void run() {
+            mFrameSource.postFrame(this);
+        }
+
+        @Override
+        public boolean doFrame(long frameTimeMillis) {
+            if (!drawFrame(frameTimeMillis)) {
+                return false;
+            }
+            mFrameSource.postFrame(this);
+            return true;
+        }
+
+        /**
+         * Advances the animation and draws it on the surface.
+         *
+         * @return {@code false} once the surface is gone
+         */
+        private boolean drawFrame(long frameTimeMillis) {
+            synchronized (mSurfaceLock) {
+                if (!mValid) {
+                    return false;
+                }
+                if (mStartTime == UNSET_START_TIME) {
+                    mStartTime = frameTimeMillis - mResumePhase;
+                    mResumePhase = 0;
+                }
+                if (!mFrameRateLimiter.shouldDraw(frameTimeMillis)) {
+                    return true;
+                }
+                advance(frameTimeMillis);
+                final Canvas canvas = mHolder.lockCanvas();
+                if (canvas == null) {
+                    return true;
+                }
+                try {
+                    draw(canvas);
+                } finally {
+                    mHolder.unlockCanvasAndPost(canvas);
+                }
+                mFrameCount.incrementAndGet();
+                return true;
+            }
+        }
+
+        private void advance(long frameTimeMillis) {
+            final int[] colors = mPendingColors.getAndSet(null);
+            if (colors != null) {
+                mState.setColors(colors);
+            }
+            // A frame after a long wait lands straight on the point the animation should be at.
+            SpinnerGeometry.computeFrameAt(mStyle, frameTimeMillis - mStartTime, mMinProgressArc,
+                    mKeyframes, mState);
+            mLastFrameTime = frameTimeMillis;
+        }
+
+        private void draw(Canvas canvas) {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            final RectF content = mContentBounds;
+            final float centerX = content.centerX();
+            final float centerY = content.centerY();
+            final float discRadius = Math.min(content.width(), content.height()) / 2f;
+            if (discRadius <= 0) {
+                return;
+            }
+            canvas.drawCircle(centerX, centerY, discRadius, mDiscPaint);
+            final float radius = mArcRadius;
+            mArcBounds.set(centerX - radius, centerY - radius, centerX + radius,
+                    centerY + radius);
+            mPaint.setColor(mState.mCurrentColor);
+            canvas.save();
+            canvas.rotate(mState.mGroupRotation, centerX, centerY);
+            canvas.drawArc(mArcBounds, mState.getStartAngle(), mState.getSweepAngle(), false,
+                    mPaint);
+            canvas.restore();
+        }
+    }
+
+    /** Paces frames by the vsync of the Choreographer of the render thread. */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerFrameSource implements FrameSource,
+            Choreographer.FrameCallback {
+        private SpinnerTicker.FrameCallback mCallback;
+
+        @Override
+        public void postFrame(@NonNull SpinnerTicker.FrameCallback callback) {
+            mCallback = callback;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mCallback.doFrame(frameTimeNanos / 1000000);
+        }
+    }
+
+    /** Paces frames by a {@link Handler} loop on the render thread, below API 16. */
+    private static final class HandlerFrameSource implements FrameSource, Runnable {
+        private final Handler mHandler;
+        private SpinnerTicker.FrameCallback mCallback;
+
+        HandlerFrameSource(Handler handler) {
+            mHandler = handler;
+        }
+
+        @Override
+        public void postFrame(@NonNull SpinnerTicker.FrameCallback callback) {
+            mCallback = callback;
+            mHandler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+
+        @Override
+        public void run() {
+            mCallback.doFrame(SystemClock.uptimeMillis());
+        }
+    }
+}
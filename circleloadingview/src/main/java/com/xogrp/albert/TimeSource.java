@@ -0,0 +1,18 @@
+package com.xogrp.albert;
+
+/**
+ * Clock a spinner reads the time of its animation from, instead of the frame time. The frame
+ * shown only depends on the time read, so a fake clock can move the animation hours ahead at
+ * once, for instance in a test.
+ *
+ * @see CircleLoadingView#setTimeSource(TimeSource)
+ */
+public interface TimeSource {
+
+    /**
+     * Returns the current time in milliseconds, on the time base of
+     * {@link android.os.SystemClock#uptimeMillis()} or any other that only moves forward. Called
+     * on the main thread once per frame.
+     */
+    long uptimeMillis();
+}
@@ -0,0 +1,128 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Checks that a drawable created from the constant state of another one draws the same frames,
+ * so nothing set on the original is lost when a view or a list clones it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ConstantStateTest {
+
+    private static final int[] COLORS = {0xFFFF4081, 0xFF3F51B5, 0xFF4CAF50};
+
+    /** Frame times, the first one starting the animation. */
+    private static final long[] FRAME_TIMES = {0, 300, 700, 1100};
+
+    private static final Drawable.Callback CALLBACK = new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        }
+    };
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void circularNewDrawableDrawsLikeOriginal() {
+        final CircularProgressDrawable original = new CircularProgressDrawable(mContext);
+        original.setStyle(CircularProgressDrawable.LARGE);
+        original.setColorSchemeColors(COLORS);
+        original.setBackgroundColor(Color.WHITE);
+        original.setArrowEnabled(true);
+        original.setAlpha(96);
+        checkNewDrawable(original);
+    }
+
+    @Test
+    public void circularNewDrawableKeepsDefaultAlpha() {
+        final CircularProgressDrawable original = new CircularProgressDrawable(mContext);
+        original.setColorSchemeColors(COLORS);
+        checkNewDrawable(original);
+    }
+
+    @Test
+    public void materialNewDrawableDrawsLikeOriginal() {
+        final MaterialProgressDrawable original = new MaterialProgressDrawable(mContext);
+        original.updateSizes(MaterialProgressDrawable.LARGE);
+        original.setColorSchemeColors(COLORS);
+        original.setBackgroundColor(Color.WHITE);
+        original.showArrow(true);
+        original.setAlpha(255);
+        checkNewDrawable(original);
+    }
+
+    @Test
+    public void materialNewDrawableKeepsFadingAlpha() {
+        final MaterialProgressDrawable original = new MaterialProgressDrawable(mContext);
+        original.setColorSchemeColors(COLORS);
+        original.setBackgroundColor(Color.WHITE);
+        original.setAlpha(128);
+        checkNewDrawable(original);
+    }
+
+    private static void checkNewDrawable(Drawable original) {
+        final Drawable.ConstantState state = original.getConstantState();
+        final Drawable copy = state.newDrawable();
+        assertNotSame(original, copy);
+        assertEquals(original.getIntrinsicWidth(), copy.getIntrinsicWidth());
+        assertEquals(original.getIntrinsicHeight(), copy.getIntrinsicHeight());
+        assertEquals(original.getAlpha(), copy.getAlpha());
+
+        prepare(original);
+        prepare(copy);
+        for (long frameTime : FRAME_TIMES) {
+            ((SpinnerTicker.FrameCallback) original).doFrame(frameTime);
+            ((SpinnerTicker.FrameCallback) copy).doFrame(frameTime);
+            assertArrayEquals("pixels at " + frameTime + " ms", render(original), render(copy));
+        }
+    }
+
+    private static void prepare(Drawable drawable) {
+        drawable.setBounds(0, 0, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+        drawable.setCallback(CALLBACK);
+        ((Animatable) drawable).start();
+    }
+
+    private static int[] render(Drawable drawable) {
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+        return pixels;
+    }
+}
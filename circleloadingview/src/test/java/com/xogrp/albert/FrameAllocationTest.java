@@ -0,0 +1,226 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadows.ShadowDrawable;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Gate for the allocation-free frame path: runs the real drawables through thousands of frames,
+ * each one advanced by {@code doFrame()} and drawn with {@code draw()} on a bitmap canvas, and
+ * fails if the steady state allocated anything on the test thread.
+ *
+ * <p>Covers the frame rate limiter, live and baked motion, color blending, frame statistics,
+ * dirty bounds and invalidation, {@code Ring.draw}, the cached arrow paths and atlas playback.
+ * Robolectric's own {@code Drawable.invalidateSelf()} allocates, so it is replaced by what the
+ * platform does, see {@link ShadowPlatformDrawable}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = FrameAllocationTest.ShadowPlatformDrawable.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class FrameAllocationTest {
+
+    private static final int SPINNERS = 10;
+    private static final int WARMUP_FRAMES = 2000;
+    /** Windows measured before giving up, see {@link #check(Drawable[])}. */
+    private static final int ATTEMPTS = 3;
+    private static final int FRAMES = 10000;
+    private static final long FRAME_INTERVAL = 16;
+
+    private static final int[] COLORS = {0xFFFF4081, 0xFF3F51B5, 0xFF4CAF50};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final CountingCallback mCallback = new CountingCallback();
+    private Context mContext;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mBitmap = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+    }
+
+    @After
+    public void tearDown() {
+        mBitmap.recycle();
+    }
+
+    @Test
+    public void circular() {
+        checkCircular(0, 0, false, false);
+    }
+
+    @Test
+    public void circularKeyframes() {
+        checkCircular(SpinnerKeyframes.DEFAULT_RESOLUTION, 0, false, false);
+    }
+
+    @Test
+    public void circularCappedFrameRate() {
+        checkCircular(0, 30, false, false);
+    }
+
+    @Test
+    public void circularArrow() {
+        checkCircular(0, 0, true, false);
+    }
+
+    @Test
+    public void circularSpriteAtlas() {
+        checkCircular(0, 0, false, true);
+    }
+
+    @Test
+    public void material() {
+        checkMaterial(0, false);
+    }
+
+    @Test
+    public void materialKeyframes() {
+        checkMaterial(SpinnerKeyframes.DEFAULT_RESOLUTION, false);
+    }
+
+    @Test
+    public void materialArrow() {
+        checkMaterial(0, true);
+    }
+
+    private void checkCircular(int keyframeResolution, int frameRate, boolean arrow,
+            boolean spriteAtlas) {
+        final CircularProgressDrawable[] spinners = new CircularProgressDrawable[SPINNERS];
+        for (int i = 0; i < SPINNERS; i++) {
+            final CircularProgressDrawable spinner = new CircularProgressDrawable(mContext);
+            spinner.setColorSchemeColors(COLORS);
+            spinner.setBackgroundColor(Color.WHITE);
+            spinner.setKeyframeResolution(keyframeResolution);
+            spinner.setFrameRate(frameRate);
+            spinner.setArrowEnabled(arrow);
+            spinner.setSpriteAtlasEnabled(spriteAtlas);
+            spinners[i] = spinner;
+        }
+        check(spinners);
+    }
+
+    private void checkMaterial(int keyframeResolution, boolean arrow) {
+        final MaterialProgressDrawable[] spinners = new MaterialProgressDrawable[SPINNERS];
+        for (int i = 0; i < SPINNERS; i++) {
+            final MaterialProgressDrawable spinner = new MaterialProgressDrawable(mContext);
+            spinner.setColorSchemeColors(COLORS);
+            spinner.setBackgroundColor(Color.WHITE);
+            spinner.setAlpha(255);
+            spinner.setKeyframeResolution(keyframeResolution);
+            spinner.showArrow(arrow);
+            spinners[i] = spinner;
+        }
+        check(spinners);
+    }
+
+    private void check(Drawable[] spinners) {
+        for (Drawable spinner : spinners) {
+            spinner.setBounds(0, 0, spinner.getIntrinsicWidth(), spinner.getIntrinsicHeight());
+            spinner.setCallback(mCallback);
+            if (spinner instanceof CircularProgressDrawable) {
+                ((CircularProgressDrawable) spinner).setFrameStatsEnabled(true);
+            } else {
+                ((MaterialProgressDrawable) spinner).setFrameStatsEnabled(true);
+            }
+            ((android.graphics.drawable.Animatable) spinner).start();
+        }
+        final long threadId = Thread.currentThread().getId();
+
+        run(spinners, 0, WARMUP_FRAMES);
+        mCallback.mInvalidations = 0;
+        // Whatever reading the counter costs is subtracted from the measurement.
+        final long overhead = -THREADS.getThreadAllocatedBytes(threadId)
+                + THREADS.getThreadAllocatedBytes(threadId);
+        // A per-frame allocation shows up in every window; a one-off of the JIT recompiling a
+        // branch the warmup didn't reach only in one, so the quietest window is the one checked.
+        long allocated = Long.MAX_VALUE;
+        int firstFrame = WARMUP_FRAMES;
+        for (int attempt = 0; attempt < ATTEMPTS && allocated != 0; attempt++) {
+            final long before = THREADS.getThreadAllocatedBytes(threadId);
+            run(spinners, firstFrame, FRAMES);
+            allocated = Math.min(allocated,
+                    THREADS.getThreadAllocatedBytes(threadId) - before - overhead);
+            firstFrame += FRAMES;
+        }
+
+        assertTrue("no frame was invalidated", mCallback.mInvalidations > 0);
+        assertFalse(spinners[0].getDirtyBounds().isEmpty());
+        assertEquals("bytes allocated over " + FRAMES + " frames", 0, allocated);
+    }
+
+    private void run(Drawable[] spinners, int firstFrame, int frames) {
+        final Canvas canvas = mCanvas;
+        for (int frame = firstFrame; frame < firstFrame + frames; frame++) {
+            final long frameTime = frame * FRAME_INTERVAL;
+            for (Drawable spinner : spinners) {
+                ((SpinnerTicker.FrameCallback) spinner).doFrame(frameTime);
+                spinner.draw(canvas);
+            }
+        }
+    }
+
+    /** Stands in for the view, counting invalidations without allocating. */
+    private static final class CountingCallback implements Drawable.Callback {
+        int mInvalidations;
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            mInvalidations++;
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        }
+    }
+
+    /**
+     * Notifies the callback like the platform {@code Drawable.invalidateSelf()} does, without
+     * the reflector {@link ShadowDrawable} allocates on every call.
+     */
+    @Implements(Drawable.class)
+    public static class ShadowPlatformDrawable extends ShadowDrawable {
+        @RealObject
+        private Drawable mRealDrawable;
+
+        @Implementation
+        @Override
+        protected void invalidateSelf() {
+            final Drawable.Callback callback = mRealDrawable.getCallback();
+            if (callback != null) {
+                callback.invalidateDrawable(mRealDrawable);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.xogrp.albert;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Software canvas that counts the drawing operations made on it, so the cost of a frame can be
+ * compared between builds independently of how fast the device happens to be.
+ */
+final class OpCountingCanvas extends Canvas {
+
+    static final int DRAW_ARC = 0;
+    static final int DRAW_PATH = 1;
+    static final int DRAW_CIRCLE = 2;
+    static final int DRAW_OVAL = 3;
+    static final int DRAW_BITMAP = 4;
+    static final int DRAW_RECT = 5;
+    static final int SAVE = 6;
+    static final int RESTORE = 7;
+    static final int OP_COUNT = 8;
+
+    private static final String[] OP_NAMES = {
+            "drawArc", "drawPath", "drawCircle", "drawOval", "drawBitmap", "drawRect", "save",
+            "restore"
+    };
+
+    private final int[] mCounts = new int[OP_COUNT];
+
+    OpCountingCanvas(Bitmap bitmap) {
+        super(bitmap);
+    }
+
+    static String getOpName(int op) {
+        return OP_NAMES[op];
+    }
+
+    /**
+     * Returns how many times the operation was made since the last reset.
+     */
+    int getCount(int op) {
+        return mCounts[op];
+    }
+
+    void resetCounts() {
+        for (int i = 0; i < OP_COUNT; i++) {
+            mCounts[i] = 0;
+        }
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+            Paint paint) {
+        mCounts[DRAW_ARC]++;
+        super.drawArc(oval, startAngle, sweepAngle, useCenter, paint);
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        mCounts[DRAW_PATH]++;
+        super.drawPath(path, paint);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mCounts[DRAW_CIRCLE]++;
+        super.drawCircle(cx, cy, radius, paint);
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        mCounts[DRAW_OVAL]++;
+        super.drawOval(oval, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mCounts[DRAW_BITMAP]++;
+        super.drawBitmap(bitmap, left, top, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        mCounts[DRAW_BITMAP]++;
+        super.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        mCounts[DRAW_BITMAP]++;
+        super.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        mCounts[DRAW_BITMAP]++;
+        super.drawBitmap(bitmap, matrix, paint);
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        mCounts[DRAW_RECT]++;
+        super.drawRect(rect, paint);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mCounts[DRAW_RECT]++;
+        super.drawRect(left, top, right, bottom, paint);
+    }
+
+    @Override
+    public int save() {
+        mCounts[SAVE]++;
+        return super.save();
+    }
+
+    @Override
+    public void restore() {
+        mCounts[RESTORE]++;
+        super.restore();
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        mCounts[RESTORE]++;
+        super.restoreToCount(saveCount);
+    }
+}
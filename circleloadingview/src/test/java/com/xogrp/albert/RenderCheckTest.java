@@ -0,0 +1,335 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the circular and material engines at fixed animation times, for each size and with
+ * and without the arrow, and checks every frame against its golden frame and the canvas op
+ * counts of the baseline. The arrow is shown at full size on an open arc, as a pull to refresh
+ * gesture leaves it, and rendered while that arc closes, the only time it is drawn. A frame whose pixels change beyond {@link #CHANNEL_TOLERANCE}, or that
+ * needs more drawing operations than the baseline, fails, so rendering can be optimised without
+ * changing what is drawn.
+ *
+ * <p>The spinners are configured by {@link SpinnerSpec} like the ones of a view. Golden frames
+ * and {@value #OP_COUNTS_FILE} are checked in under {@code src/test/resources/render_check}.
+ * After an intended change they are recorded again with
+ * <pre>
+ * ./gradlew :circleloadingview:testDebugUnitTest --tests '*RenderCheckTest' -PrecordRenderCheck
+ * </pre>
+ * which also lowers the baseline where a frame got cheaper.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(qualifiers = "xhdpi")
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class RenderCheckTest {
+
+    /** Set to {@code true} to record the golden frames and op counts instead of checking. */
+    private static final String RECORD_PROPERTY = "renderCheck.record";
+    /** Directory the references are recorded to, the checked in resources by default. */
+    private static final String DIR_PROPERTY = "renderCheck.dir";
+    private static final String DEFAULT_DIR = "src/test/resources/render_check";
+    private static final String RESOURCE_DIR = "/render_check/";
+    private static final String OP_COUNTS_FILE = "op_counts.properties";
+
+    private static final int[] COLORS = {0xFFFF4081, 0xFF3F51B5};
+
+    /**
+     * Animation times rendered: the start, points of the first cycles, and a point hours in that
+     * is reached with a single seek.
+     */
+    private static final long[] TIMES = {
+            0, 200, 666, 1000, 1332, 2500, 5000, TimeUnit.HOURS.toMillis(10) + 400
+    };
+
+    /** Arc open when the arrow frames start, as a fraction of a turn. */
+    private static final float ARROW_ARC_END = 0.7f;
+
+    /** Animation times of the arrow frames, within the half cycle that closes the open arc. */
+    private static final long[] ARROW_TIMES = {0, 100, 250, 400, 550, 650};
+
+    /** Largest difference of a color channel that still counts as the same pixel. */
+    private static final int CHANNEL_TOLERANCE = 2;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() {
+        final List<Object[]> parameters = new ArrayList<>();
+        final String[] engineNames = {"circular", "material"};
+        final int[] engines = {SpinnerSpec.ENGINE_CIRCULAR, SpinnerSpec.ENGINE_MATERIAL};
+        final String[] sizeNames = {"normal", "large"};
+        final int[] sizes = {CircleLoadingView.NORMAL, CircleLoadingView.LARGE};
+        for (int i = 0; i < engines.length; i++) {
+            for (int arrow = 0; arrow < 2; arrow++) {
+                for (int j = 0; j < sizes.length; j++) {
+                    final String name = engineNames[i] + (arrow == 1 ? "_arrow_" : "_")
+                            + sizeNames[j];
+                    parameters.add(new Object[] {name, engines[i], arrow == 1, sizes[j]});
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private final String mName;
+    private final int mEngine;
+    private final boolean mShowArrow;
+    private final int mSize;
+
+    public RenderCheckTest(String name, int engine, boolean showArrow, int size) {
+        mName = name;
+        mEngine = engine;
+        mShowArrow = showArrow;
+        mSize = size;
+    }
+
+    @Test
+    public void framesMatchGoldenFramesAndOpCounts() throws IOException {
+        final boolean record = Boolean.getBoolean(RECORD_PROPERTY);
+        final File dir = new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+        final Properties opCounts = record ? readOpCounts(new File(dir, OP_COUNTS_FILE))
+                : loadOpCounts();
+
+        final SpinnerSpec spec = new SpinnerSpec();
+        spec.mEngine = mEngine;
+        spec.mShowArrow = mShowArrow;
+        spec.mSize = mSize;
+        spec.mColors = COLORS;
+        final ProgressDrawableCreator creator =
+                spec.createCreator(RuntimeEnvironment.getApplication());
+        final Drawable drawable = creator.getDrawable();
+        if (mShowArrow) {
+            openArcWithArrow(drawable);
+        }
+        final long[] times = mShowArrow ? ARROW_TIMES : TIMES;
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+        drawable.setBounds(0, 0, width, height);
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final OpCountingCanvas canvas = new OpCountingCanvas(bitmap);
+
+        final List<String> failures = new ArrayList<>();
+        for (long time : times) {
+            final String frame = mName + "_" + time;
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.resetCounts();
+            creator.setAnimationTime(time);
+            drawable.draw(canvas);
+            if (record) {
+                recordOpCounts(frame, canvas, opCounts);
+                writePng(bitmap, new File(dir, frame + ".png"));
+                continue;
+            }
+            final String opFailure = checkOpCounts(frame, canvas, opCounts);
+            if (opFailure != null) {
+                failures.add(frame + ": " + opFailure);
+            }
+            final String pixelFailure = comparePixels(bitmap, frame);
+            if (pixelFailure != null) {
+                failures.add(frame + ": " + pixelFailure);
+            }
+        }
+        bitmap.recycle();
+
+        if (record) {
+            writeOpCounts(new File(dir, OP_COUNTS_FILE), opCounts);
+        } else if (!failures.isEmpty()) {
+            fail(failures.size() + " of " + times.length + " frames failed:\n"
+                    + String.join("\n", failures));
+        }
+    }
+
+    /**
+     * Opens the arc and shows the arrow at full size, which the views leave to a pull to refresh
+     * gesture.
+     */
+    private static void openArcWithArrow(Drawable drawable) {
+        if (drawable instanceof CircularProgressDrawable) {
+            final CircularProgressDrawable circular = (CircularProgressDrawable) drawable;
+            circular.setStartEndTrim(0f, ARROW_ARC_END);
+            circular.setArrowScale(1f);
+        } else {
+            final MaterialProgressDrawable material = (MaterialProgressDrawable) drawable;
+            material.setStartEndTrim(0f, ARROW_ARC_END);
+            material.setArrowScale(1f);
+        }
+    }
+
+    /**
+     * Compares the op counts of a frame with the baseline.
+     *
+     * @return a description of the counts that went up, or {@code null} if none did
+     */
+    private static String checkOpCounts(String frame, OpCountingCanvas canvas,
+            Properties opCounts) {
+        StringBuilder increases = null;
+        for (int op = 0; op < OpCountingCanvas.OP_COUNT; op++) {
+            final String key = frame + "." + OpCountingCanvas.getOpName(op);
+            final String reference = opCounts.getProperty(key);
+            if (reference == null) {
+                return "no op count baseline for " + key;
+            }
+            final int referenceCount = Integer.parseInt(reference);
+            final int count = canvas.getCount(op);
+            if (count > referenceCount) {
+                if (increases == null) {
+                    increases = new StringBuilder();
+                } else {
+                    increases.append(", ");
+                }
+                increases.append(OpCountingCanvas.getOpName(op)).append(' ')
+                        .append(referenceCount).append(" -> ").append(count);
+            }
+        }
+        return increases != null ? increases.toString() : null;
+    }
+
+    private static void recordOpCounts(String frame, OpCountingCanvas canvas,
+            Properties opCounts) {
+        for (int op = 0; op < OpCountingCanvas.OP_COUNT; op++) {
+            opCounts.setProperty(frame + "." + OpCountingCanvas.getOpName(op),
+                    Integer.toString(canvas.getCount(op)));
+        }
+    }
+
+    /**
+     * @return a description of the difference to the golden frame, or {@code null} if there is
+     *         none
+     */
+    private static String comparePixels(Bitmap bitmap, String frame) throws IOException {
+        final Bitmap reference;
+        final InputStream in = RenderCheckTest.class.getResourceAsStream(
+                RESOURCE_DIR + frame + ".png");
+        if (in == null) {
+            return "no golden frame";
+        }
+        try {
+            reference = BitmapFactory.decodeStream(in);
+        } finally {
+            in.close();
+        }
+        assertNotNull("can't decode the golden frame of " + frame, reference);
+        try {
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            if (reference.getWidth() != width || reference.getHeight() != height) {
+                return String.format(Locale.US, "size %dx%d, golden frame %dx%d", width, height,
+                        reference.getWidth(), reference.getHeight());
+            }
+            final int[] pixels = new int[width * height];
+            final int[] referencePixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            reference.getPixels(referencePixels, 0, width, 0, 0, width, height);
+            int different = 0;
+            for (int i = 0; i < pixels.length; i++) {
+                if (!isSamePixel(pixels[i], referencePixels[i])) {
+                    different++;
+                }
+            }
+            return different > 0 ? String.format(Locale.US,
+                    "%d of %d pixels differ from the golden frame", different, pixels.length)
+                    : null;
+        } finally {
+            reference.recycle();
+        }
+    }
+
+    private static boolean isSamePixel(int pixel, int reference) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int difference = ((pixel >>> shift) & 0xff) - ((reference >>> shift) & 0xff);
+            if (Math.abs(difference) > CHANNEL_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Properties loadOpCounts() throws IOException {
+        final InputStream in = RenderCheckTest.class.getResourceAsStream(
+                RESOURCE_DIR + OP_COUNTS_FILE);
+        assertNotNull("no " + OP_COUNTS_FILE + " baseline", in);
+        final Properties properties = new Properties();
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    private static Properties readOpCounts(File file) throws IOException {
+        final Properties properties = new Properties();
+        if (file.exists()) {
+            final InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return properties;
+    }
+
+    /** Writes the op counts sorted and without a date, so a new baseline diffs cleanly. */
+    private static void writeOpCounts(File file, Properties properties) throws IOException {
+        mkdirs(file.getParentFile());
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.ISO_8859_1);
+        try {
+            out.write("# Canvas operations per frame of RenderCheckTest\n");
+            for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+                out.write(key + "=" + properties.getProperty(key) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writePng(Bitmap bitmap, File file) throws IOException {
+        mkdirs(file.getParentFile());
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Can't encode " + file);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stalls the main thread and checks that the render thread of {@link SurfaceCircleLoadingView}
+ * kept drawing frames on its surface all along, not in a burst after the stall.
+ *
+ * <p>The surface is a bitmap behind a {@link SurfaceHolder} that stamps every posted frame with
+ * the real time. Robolectric's Choreographer and delayed messages follow its fake clock, which
+ * doesn't move with the real time while the main thread sleeps, so the render thread is paced by
+ * a {@link RealTimeFrameSource} instead of its vsync.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class RenderThreadStallTest {
+
+    private static final int SIZE = 100;
+    private static final long STALL_MILLIS = 1000;
+    /** Fewest frames expected during a stall, half of those the frame source paces. */
+    private static final int MIN_STALL_FRAMES = 30;
+    /** Longest gap between two frames during the stall, generous for a loaded machine. */
+    private static final long MAX_FRAME_GAP_MILLIS = 250;
+    private static final long FIRST_FRAME_TIMEOUT_MILLIS = 5000;
+    /** Interval of the real time frames, about the vsync of a 60 Hz display. */
+    private static final long FRAME_INTERVAL_MILLIS = 16;
+
+    private SurfaceCircleLoadingView mView;
+    private BitmapSurfaceHolder mHolder;
+
+    @Before
+    public void setUp() {
+        mView = new SurfaceCircleLoadingView(RuntimeEnvironment.getApplication());
+        mView.setFrameSource(new RealTimeFrameSource());
+        mHolder = new BitmapSurfaceHolder(SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mHolder.mBitmap.recycle();
+    }
+
+    @Test
+    public void framesKeepComingWhileMainThreadStalls() throws InterruptedException {
+        createSurface();
+        awaitFirstFrame();
+
+        final long stallStart = System.nanoTime();
+        // The test runs on the main thread, so this blocks it like heavy work would.
+        Thread.sleep(STALL_MILLIS);
+        final long stallEnd = System.nanoTime();
+
+        final List<Long> frames = mHolder.getFrameTimes(stallStart, stallEnd);
+        assertTrue("frames drawn during a " + STALL_MILLIS + " ms stall: " + frames.size(),
+                frames.size() >= MIN_STALL_FRAMES);
+        // No more than the frame source paces, so the frames aren't drawn as fast as possible.
+        assertTrue("frames drawn during a " + STALL_MILLIS + " ms stall: " + frames.size(),
+                frames.size() <= STALL_MILLIS / FRAME_INTERVAL_MILLIS + 1);
+        long previous = stallStart;
+        long maxGap = 0;
+        for (long frameTime : frames) {
+            maxGap = Math.max(maxGap, frameTime - previous);
+            previous = frameTime;
+        }
+        maxGap = Math.max(maxGap, stallEnd - previous);
+        assertTrue("longest gap between frames: " + TimeUnit.NANOSECONDS.toMillis(maxGap) + " ms",
+                maxGap <= TimeUnit.MILLISECONDS.toNanos(MAX_FRAME_GAP_MILLIS));
+        assertEquals(mHolder.getFrameCount(), mView.getFrameCount());
+
+        mView.surfaceDestroyed(mHolder);
+    }
+
+    @Test
+    public void framesStopOnceSurfaceIsDestroyed() throws InterruptedException {
+        createSurface();
+        awaitFirstFrame();
+
+        mView.surfaceDestroyed(mHolder);
+        final long frameCount = mHolder.getFrameCount();
+        Thread.sleep(100);
+
+        assertEquals(frameCount, mHolder.getFrameCount());
+        assertEquals(frameCount, mView.getFrameCount());
+    }
+
+    private void createSurface() {
+        mView.surfaceCreated(mHolder);
+        mView.surfaceChanged(mHolder, PixelFormat.TRANSLUCENT, SIZE, SIZE);
+    }
+
+    private void awaitFirstFrame() throws InterruptedException {
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(FIRST_FRAME_TIMEOUT_MILLIS);
+        while (mView.getFrameCount() == 0) {
+            assertTrue("no frame within " + FIRST_FRAME_TIMEOUT_MILLIS + " ms",
+                    System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Calls back a frame interval of real time after a frame is posted, by sleeping on the render
+     * thread the way it would wait for the next vsync.
+     */
+    private static final class RealTimeFrameSource implements SurfaceCircleLoadingView.FrameSource {
+        @Override
+        public void postFrame(final SpinnerTicker.FrameCallback callback) {
+            new Handler(Looper.myLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(FRAME_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    callback.doFrame(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+                }
+            });
+        }
+    }
+
+    /** A surface drawing into a bitmap, recording when each frame was posted. */
+    private static final class BitmapSurfaceHolder implements SurfaceHolder {
+        final Bitmap mBitmap;
+        private final Canvas mCanvas;
+        private final List<Long> mFrameTimes = new ArrayList<>();
+
+        BitmapSurfaceHolder(int width, int height) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+
+        synchronized int getFrameCount() {
+            return mFrameTimes.size();
+        }
+
+        /** Returns the times in nanoseconds of the frames posted between start and end. */
+        synchronized List<Long> getFrameTimes(long start, long end) {
+            final List<Long> times = new ArrayList<>();
+            for (long time : mFrameTimes) {
+                if (time >= start && time <= end) {
+                    times.add(time);
+                }
+            }
+            return times;
+        }
+
+        @Override
+        public Canvas lockCanvas() {
+            return mCanvas;
+        }
+
+        @Override
+        public Canvas lockCanvas(Rect dirty) {
+            return mCanvas;
+        }
+
+        @Override
+        public synchronized void unlockCanvasAndPost(Canvas canvas) {
+            mFrameTimes.add(System.nanoTime());
+        }
+
+        @Override
+        public Rect getSurfaceFrame() {
+            return new Rect(0, 0, mBitmap.getWidth(), mBitmap.getHeight());
+        }
+
+        @Override
+        public Surface getSurface() {
+            return null;
+        }
+
+        @Override
+        public boolean isCreating() {
+            return false;
+        }
+
+        @Override
+        public void addCallback(Callback callback) {
+        }
+
+        @Override
+        public void removeCallback(Callback callback) {
+        }
+
+        @Override
+        public void setType(int type) {
+        }
+
+        @Override
+        public void setFixedSize(int width, int height) {
+        }
+
+        @Override
+        public void setSizeFromLayout() {
+        }
+
+        @Override
+        public void setFormat(int format) {
+        }
+
+        @Override
+        public void setKeepScreenOn(boolean screenOn) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that sprite atlases stay within their memory budget, that a spinner too large for one
+ * is drawn directly, and that the memory of every atlas still in use is reported.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(qualifiers = "xxxhdpi")
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SpinnerAtlasTest {
+
+    @Test
+    public void atlasStaysWithinItsBudget() {
+        // The large spinner with its arrow at xxxhdpi, which doesn't fit all the frames.
+        final SpinnerAtlas atlas = SpinnerAtlas.obtain(50f, 12f, Paint.Cap.SQUARE, 48f, 24f);
+        assertNotNull(atlas);
+        assertTrue("atlas of " + atlas.getByteCount() + " bytes",
+                atlas.getByteCount() <= SpinnerAtlas.MAX_ATLAS_SIZE);
+    }
+
+    @Test
+    public void atlasTooLargeIsNotRendered() {
+        assertNull(SpinnerAtlas.obtain(400f, 40f, Paint.Cap.SQUARE, 0f, 0f));
+    }
+
+    @Test
+    public void spinnerTooLargeForAnAtlasIsDrawnDirectly() {
+        final CircularProgressDrawable drawable = newDrawable();
+        drawable.setDiameter(SpinnerMetrics.MAX_DIAMETER);
+        final OpCountingCanvas canvas = draw(drawable);
+        assertEquals(0, canvas.getCount(OpCountingCanvas.DRAW_BITMAP));
+        assertEquals(1, canvas.getCount(OpCountingCanvas.DRAW_ARC));
+    }
+
+    @Test
+    public void arrowScaleAnimationUsesQuantizedAtlases() {
+        final CircularProgressDrawable drawable = newDrawable();
+        draw(drawable);
+        final int usage = SpinnerAtlas.getMemoryUsage();
+        // Scales within a step of the arrow path cache draw from the atlas already rendered.
+        for (int i = 1; i < 10; i++) {
+            drawable.setArrowScale(1f + i / (10f * ArrowPathCache.SCALE_STEPS * 2));
+            final OpCountingCanvas canvas = draw(drawable);
+            assertEquals(1, canvas.getCount(OpCountingCanvas.DRAW_BITMAP));
+        }
+        assertEquals(usage, SpinnerAtlas.getMemoryUsage());
+    }
+
+    @Test
+    public void memoryOfEvictedAtlasesInUseIsReported() {
+        final List<SpinnerAtlas> atlases = new ArrayList<>();
+        long held = 0;
+        for (int i = 0; held <= 2L * SpinnerAtlas.MAX_CACHE_SIZE; i++) {
+            final SpinnerAtlas atlas = SpinnerAtlas.obtain(60f + i, 12f, Paint.Cap.SQUARE, 0f, 0f);
+            atlases.add(atlas);
+            held += atlas.getByteCount();
+        }
+        assertTrue("reported " + SpinnerAtlas.getMemoryUsage() + " of " + held + " bytes held",
+                SpinnerAtlas.getMemoryUsage() >= held);
+    }
+
+    private static CircularProgressDrawable newDrawable() {
+        final CircularProgressDrawable drawable =
+                new CircularProgressDrawable(RuntimeEnvironment.getApplication());
+        drawable.setArrowEnabled(true);
+        drawable.setArrowScale(1f);
+        drawable.setSpriteAtlasEnabled(true);
+        drawable.setStartEndTrim(0f, 0.5f);
+        return drawable;
+    }
+
+    private static OpCountingCanvas draw(CircularProgressDrawable drawable) {
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+        drawable.setBounds(0, 0, width, height);
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final OpCountingCanvas canvas = new OpCountingCanvas(bitmap);
+        drawable.draw(canvas);
+        bitmap.recycle();
+        return canvas;
+    }
+}
@@ -0,0 +1,118 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the baked keyframes of each style against the live math at points between the samples,
+ * and that {@link SpinnerKeyframes#obtain(int, float, int)} rejects tables that exceed
+ * {@link SpinnerKeyframes#MAX_ERROR}.
+ */
+@RunWith(Parameterized.class)
+public class SpinnerKeyframesTest {
+
+    /** Resolutions checked, with whether their tables stay within the bound. */
+    private static final Object[][] RESOLUTIONS = {
+            {16, false}, {32, false}, {64, false}, {96, false}, {128, false}, {200, true},
+            {256, true}, {SpinnerKeyframes.DEFAULT_RESOLUTION, true}, {800, true}
+    };
+
+    /** Minimum arc of a default size material spinner, from its stroke and radius in dp. */
+    private static final float MATERIAL_MIN_PROGRESS_ARC =
+            SpinnerGeometry.getMaterialMinProgressArc(2.5f, 8.75f);
+
+    /** Points of the cycle probed, chosen not to line up with the samples. */
+    private static final int PROBES = 10007;
+
+    private final int mStyle;
+    private final int mResolution;
+    private final boolean mAccepted;
+
+    @Parameterized.Parameters(name = "style {0}, resolution {1}")
+    public static List<Object[]> parameters() {
+        final List<Object[]> parameters = new ArrayList<>();
+        for (int style : new int[] {SpinnerGeometry.STYLE_CIRCULAR,
+                SpinnerGeometry.STYLE_MATERIAL}) {
+            for (Object[] resolution : RESOLUTIONS) {
+                parameters.add(new Object[] {style, resolution[0], resolution[1]});
+            }
+        }
+        return parameters;
+    }
+
+    public SpinnerKeyframesTest(int style, int resolution, boolean accepted) {
+        mStyle = style;
+        mResolution = resolution;
+        mAccepted = accepted;
+    }
+
+    private float getMinProgressArc() {
+        return mStyle == SpinnerGeometry.STYLE_MATERIAL ? MATERIAL_MIN_PROGRESS_ARC
+                : SpinnerGeometry.CIRCULAR_MIN_PROGRESS_ARC;
+    }
+
+    @Test
+    public void obtainOnlyReturnsTablesWithinMaxError() {
+        final SpinnerKeyframes keyframes =
+                SpinnerKeyframes.obtain(mStyle, getMinProgressArc(), mResolution);
+        final float error =
+                SpinnerKeyframes.bake(mStyle, getMinProgressArc(), mResolution).getMaxError();
+        if (mAccepted) {
+            assertNotNull("error " + error, keyframes);
+            assertTrue("error " + error, keyframes.getMaxError() <= SpinnerKeyframes.MAX_ERROR);
+        } else {
+            assertNull("error " + error, keyframes);
+            assertTrue("error " + error, error > SpinnerKeyframes.MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void bakedFramesStayWithinMaxErrorBetweenSamples() {
+        final SpinnerKeyframes keyframes =
+                SpinnerKeyframes.obtain(mStyle, getMinProgressArc(), mResolution);
+        if (keyframes == null) {
+            return;
+        }
+        final SpinnerState baked = new SpinnerState(new int[] {0});
+        final SpinnerState live = new SpinnerState(new int[] {0});
+        float maxError = 0f;
+        for (int i = 0; i <= PROBES; i++) {
+            final float interpolatedTime = i / (float) PROBES;
+            keyframes.computeFrame(interpolatedTime, baked);
+            SpinnerGeometry.computeFrame(mStyle, interpolatedTime, getMinProgressArc(), live);
+            maxError = Math.max(maxError, Math.abs(baked.mStartTrim - live.mStartTrim));
+            maxError = Math.max(maxError, Math.abs(baked.mEndTrim - live.mEndTrim));
+            maxError = Math.max(maxError, Math.abs(baked.mRotation - live.mRotation));
+        }
+        assertTrue("error " + maxError, maxError <= SpinnerKeyframes.MAX_ERROR);
+    }
+
+    @Test
+    public void bakedFramesMatchSamplesExactly() {
+        final SpinnerKeyframes keyframes =
+                SpinnerKeyframes.obtain(mStyle, getMinProgressArc(), mResolution);
+        if (keyframes == null) {
+            return;
+        }
+        final SpinnerState baked = new SpinnerState(new int[] {0});
+        final SpinnerState live = new SpinnerState(new int[] {0});
+        final int resolution = keyframes.getResolution();
+        for (int i = 0; i < resolution / 2; i++) {
+            final float interpolatedTime = SpinnerGeometry.SHRINK_OFFSET * i / (resolution / 2);
+            keyframes.computeFrame(interpolatedTime, baked);
+            SpinnerGeometry.computeFrame(mStyle, interpolatedTime, getMinProgressArc(), live);
+            assertEquals(live.mStartTrim, baked.mStartTrim, 1e-6f);
+            assertEquals(live.mEndTrim, baked.mEndTrim, 1e-6f);
+            assertEquals(live.mRotation, baked.mRotation, 1e-6f);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.xogrp.albert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Checks that the pre-Lollipop shadow disc follows the diameter of the spinner, and that the
+ * standard sizes keep the shadow they always had.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SpinnerMetricsTest {
+
+    private static final int KEY_SHADOW_COLOR = 0x1E000000;
+    /** Smallest alpha of a pixel counted as covered by the opaque disc, not its shadow. */
+    private static final int MIN_DISC_ALPHA = 0xF0;
+
+    private static final float[] DENSITIES = {0.75f, 1f, 1.5f, 2f, 3f, 4f};
+    private static final float[] DIAMETERS = {
+            SpinnerMetrics.MIN_DIAMETER, 24f, SpinnerMetrics.DIAMETER, 48f,
+            SpinnerMetrics.DIAMETER_LARGE, 72f, SpinnerMetrics.MAX_DIAMETER
+    };
+
+    @Test
+    public void stylesHaveMetricsOfTheirOwn() {
+        for (float density : DENSITIES) {
+            for (float diameter : DIAMETERS) {
+                final SpinnerMetrics circular = obtain(diameter, density);
+                final SpinnerMetrics material = SpinnerMetrics.obtain(
+                        SpinnerGeometry.STYLE_MATERIAL, diameter, density);
+                assertSame(circular, obtain(diameter, density));
+                assertTrue(diameter + "dp at " + density + "x",
+                        material.mCenterRadius > circular.mCenterRadius);
+            }
+        }
+    }
+
+    @Test
+    public void standardSizesKeepTheirShadow() {
+        for (float density : DENSITIES) {
+            final int inset = (int) (density * ShadowBitmapCache.SHADOW_RADIUS);
+            assertEquals(inset, obtain(SpinnerMetrics.DIAMETER, density).mShadowInset);
+            assertEquals(inset, obtain(SpinnerMetrics.DIAMETER_LARGE, density).mShadowInset);
+        }
+    }
+
+    @Test
+    public void shadowDiscFillsTheDiameter() {
+        for (float density : DENSITIES) {
+            for (float diameter : DIAMETERS) {
+                final SpinnerMetrics metrics = obtain(diameter, density);
+                // The disc diameter CircleLoadingView passes for its shadow.
+                final Bitmap bitmap = ShadowBitmapCache.obtain(
+                        (int) (metrics.mShadowDiscRadius * 2), metrics.mShadowInset,
+                        KEY_SHADOW_COLOR, Color.WHITE);
+                final int discWidth = measureDiscWidth(bitmap);
+                assertTrue(diameter + "dp at " + density + "x: disc of " + discWidth
+                        + " px for a diameter of " + metrics.mDiameter + " px",
+                        Math.abs(discWidth - metrics.mDiameter) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void shadowInsetGrowsWithTheDiameter() {
+        for (float density : DENSITIES) {
+            int previous = 0;
+            for (float diameter : DIAMETERS) {
+                final int inset = obtain(diameter, density).mShadowInset;
+                assertTrue(diameter + "dp at " + density + "x", inset >= previous);
+                previous = inset;
+            }
+        }
+    }
+
+    @Test
+    public void shadowBitmapSurroundsTheDiscByTheInset() {
+        for (float diameter : DIAMETERS) {
+            final SpinnerMetrics metrics = obtain(diameter, 2f);
+            final int discDiameter = (int) (metrics.mShadowDiscRadius * 2);
+            final Bitmap bitmap = ShadowBitmapCache.obtain(discDiameter, metrics.mShadowInset,
+                    KEY_SHADOW_COLOR, SpinnerSpec.DEFAULT_BACKGROUND_COLOR);
+            assertEquals(discDiameter + 2 * metrics.mShadowInset, bitmap.getWidth());
+            assertEquals(discDiameter + 2 * metrics.mShadowInset, bitmap.getHeight());
+        }
+    }
+
+    /**
+     * Returns the width of the opaque disc drawn across the middle row of a shadow bitmap.
+     */
+    private static int measureDiscWidth(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int[] row = new int[width];
+        bitmap.getPixels(row, 0, width, 0, bitmap.getHeight() / 2, width, 1);
+        int discWidth = 0;
+        for (int pixel : row) {
+            if (Color.alpha(pixel) >= MIN_DISC_ALPHA) {
+                discWidth++;
+            }
+        }
+        return discWidth;
+    }
+
+    private static SpinnerMetrics obtain(float diameter, float density) {
+        return SpinnerMetrics.obtain(SpinnerGeometry.STYLE_CIRCULAR, diameter, density);
+    }
+}